@@ -1,19 +1,27 @@
 -- Sample data for testing the Course Attendance System
 -- Run this after Liquibase migrations have been applied
+-- Ids are not auto-generated: the application allocates them in blocks from id_sequence,
+-- so rows inserted here carry explicit ids and id_sequence is moved past them at the end.
 
 -- Insert sample students
-INSERT INTO student (student_number, full_name, email) VALUES
-('STU001', 'John Doe', 'john.doe@example.com'),
-('STU002', 'Jane Smith', 'jane.smith@example.com'),
-('STU003', 'Bob Johnson', 'bob.johnson@example.com'),
-('STU004', 'Alice Williams', 'alice.williams@example.com'),
-('STU005', 'Charlie Brown', 'charlie.brown@example.com');
+INSERT INTO student (id, student_number, full_name, email) VALUES
+(1, 'STU001', 'John Doe', 'john.doe@example.com'),
+(2, 'STU002', 'Jane Smith', 'jane.smith@example.com'),
+(3, 'STU003', 'Bob Johnson', 'bob.johnson@example.com'),
+(4, 'STU004', 'Alice Williams', 'alice.williams@example.com'),
+(5, 'STU005', 'Charlie Brown', 'charlie.brown@example.com');
 
 -- Insert sample courses
-INSERT INTO course (code, title, description, start_date, end_date) VALUES
-('CS101', 'Introduction to Programming', 'Learn the basics of programming using Java', '2025-01-15 00:00:00', '2025-05-15 00:00:00'),
-('CS201', 'Data Structures', 'Advanced data structures and algorithms', '2025-01-15 00:00:00', '2025-05-15 00:00:00'),
-('CS301', 'Database Systems', 'Introduction to relational databases', '2025-01-15 00:00:00', '2025-05-15 00:00:00');
+INSERT INTO course (id, code, title, description, start_date, end_date) VALUES
+(1, 'CS101', 'Introduction to Programming', 'Learn the basics of programming using Java', '2025-01-15 00:00:00', '2025-05-15 00:00:00'),
+(2, 'CS201', 'Data Structures', 'Advanced data structures and algorithms', '2025-01-15 00:00:00', '2025-05-15 00:00:00'),
+(3, 'CS301', 'Database Systems', 'Introduction to relational databases', '2025-01-15 00:00:00', '2025-05-15 00:00:00');
+
+-- Move the id blocks past the rows above (a block read as V covers ids V - 49 .. V)
+UPDATE id_sequence SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 50 FROM student))
+WHERE sequence_name = 'student';
+UPDATE id_sequence SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 50 FROM course))
+WHERE sequence_name = 'course';
 
 -- Note: Users should be created via the API endpoints for proper password hashing
 -- Example API calls:
@@ -0,0 +1,55 @@
+package com.course.benchmark;
+
+import com.course.modules.attendance.dto.AttendanceDto;
+import com.course.modules.attendance.model.AttendanceStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialize danh sách AttendanceDto ra JSON như response của /api/attendance/session/{id} và /student/{id}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttendanceSerializationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<AttendanceDto> attendances;
+
+    @Setup
+    public void setUp() {
+        // Cấu hình giống ObjectMapper mà Spring Boot dựng cho MVC (có JavaTimeModule)
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        attendances = new ArrayList<>(size);
+        LocalDateTime start = LocalDateTime.of(2025, 11, 20, 10, 0);
+        for (int i = 0; i < size; i++) {
+            attendances.add(AttendanceDto.builder()
+                    .id((long) i + 1)
+                    .sessionId(1L)
+                    .studentId((long) i + 1)
+                    .studentNumber(String.format("SV%06d", i + 1))
+                    .studentName("Nguyễn Văn Sinh Viên " + (i + 1))
+                    .status(i % 10 == 0 ? AttendanceStatus.LATE : AttendanceStatus.PRESENT)
+                    .checkedAt(start.plusSeconds(i))
+                    .courseName("Lập trình Java")
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws Exception {
+        return objectMapper.writeValueAsBytes(attendances);
+    }
+}
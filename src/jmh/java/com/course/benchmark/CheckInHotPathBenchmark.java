@@ -0,0 +1,78 @@
+package com.course.benchmark;
+
+import com.course.modules.attendance.event.AttendanceCheckedInEvent;
+import com.course.modules.attendance.model.AttendanceCounterScope;
+import com.course.modules.attendance.model.AttendanceStatus;
+import com.course.modules.attendance.service.AttendanceCounterService;
+import com.course.modules.attendance.service.AttendanceStatisticsEngine;
+import com.course.modules.attendance.service.CheckInRateLimiter;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Các bước trong bộ nhớ mà mỗi check-in đi qua, chạy với nhiều luồng như lúc cả lớp quét cùng lúc:
+ * rate limiter (theo sinh viên và buổi học), cộng bộ thống kê LongAdder và đọc số liệu thống kê.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class CheckInHotPathBenchmark {
+
+    private static final int STUDENTS = 100_000;
+    private static final int SESSIONS = 50;
+
+    private CheckInRateLimiter rateLimiter;
+    private AttendanceStatisticsEngine statisticsEngine;
+    private AttendanceCheckedInEvent[] events;
+
+    @Setup
+    public void setUp() {
+        // Giới hạn rất cao để đo chi phí của limiter chứ không đo tỉ lệ từ chối
+        rateLimiter = new CheckInRateLimiter(true, 1_000_000, 1_000_000, 1_000_000, 1_000_000, 64, 1_000_000);
+
+        // JdbcTemplate giả: lần đối soát đầu trả về rỗng, engine sẵn sàng mà không cần DB
+        statisticsEngine = new AttendanceStatisticsEngine(Mockito.mock(JdbcTemplate.class),
+                Mockito.mock(PlatformTransactionManager.class), true, 300);
+        statisticsEngine.reconcile();
+
+        events = new AttendanceCheckedInEvent[1024];
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < events.length; i++) {
+            events[i] = AttendanceCheckedInEvent.builder()
+                    .attendanceId((long) i)
+                    .courseId((long) (i % 5))
+                    .sessionId((long) (i % SESSIONS))
+                    .studentId((long) (i * 97 % STUDENTS))
+                    .status(i % 10 == 0 ? AttendanceStatus.LATE : AttendanceStatus.PRESENT)
+                    .checkedAt(now)
+                    .build();
+        }
+    }
+
+    @Benchmark
+    public long rateLimiterAcquire() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return rateLimiter.tryAcquire((long) random.nextInt(STUDENTS), (long) random.nextInt(SESSIONS));
+    }
+
+    @Benchmark
+    public void statisticsRecord() {
+        statisticsEngine.onCheckedIn(events[ThreadLocalRandom.current().nextInt(events.length)]);
+    }
+
+    @Benchmark
+    public AttendanceCounterService.Counts statisticsRead() {
+        return statisticsEngine.getCounts(AttendanceCounterScope.SESSION,
+                (long) ThreadLocalRandom.current().nextInt(SESSIONS));
+    }
+}
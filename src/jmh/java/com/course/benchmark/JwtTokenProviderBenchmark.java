@@ -0,0 +1,69 @@
+package com.course.benchmark;
+
+import com.course.core.auth.model.UserRole;
+import com.course.core.auth.security.AuthenticatedUser;
+import com.course.core.auth.service.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sinh / xác thực JWT như JwtAuthenticationFilter làm ở mỗi request.
+ * verifyCached đo request lặp lại (trúng cache token đã xác thực), verifyUncached đo lần parse + verify HMAC đầu tiên.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+
+    private JwtTokenProvider cachedProvider;
+    private JwtTokenProvider uncachedProvider;
+    private AuthenticatedUser user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cachedProvider = newProvider(true);
+        uncachedProvider = newProvider(false);
+        user = new AuthenticatedUser(42L, "student042", null, UserRole.STUDENT, 1042L);
+        token = cachedProvider.generateToken(user);
+        cachedProvider.verifyToken(token);
+    }
+
+    @Benchmark
+    public String generate() {
+        return cachedProvider.generateToken(user);
+    }
+
+    @Benchmark
+    public Claims verifyCached() {
+        return cachedProvider.verifyToken(token);
+    }
+
+    @Benchmark
+    public Claims verifyUncached() {
+        return uncachedProvider.verifyToken(token);
+    }
+
+    @Benchmark
+    public AuthenticatedUser verifyAndBuildPrincipal() {
+        return uncachedProvider.getAuthenticatedUser(uncachedProvider.verifyToken(token));
+    }
+
+    // Provider dùng @Value trên field nên dựng tay thay vì khởi động Spring context
+    private static JwtTokenProvider newProvider(boolean verifiedCache) {
+        JwtTokenProvider provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "jwtSecret",
+                "benchmarkSecretKeyForJwtTokenGenerationThatIsAtLeast512BitsLongForHs512Signatures");
+        ReflectionTestUtils.setField(provider, "jwtExpirationMs", 86_400_000L);
+        ReflectionTestUtils.setField(provider, "verifiedCacheEnabled", verifiedCache);
+        ReflectionTestUtils.setField(provider, "verifiedCacheMaxSize", 10_000);
+        ReflectionTestUtils.invokeMethod(provider, "init");
+        return provider;
+    }
+}
@@ -0,0 +1,49 @@
+package com.course.benchmark;
+
+import com.course.modules.session.service.QrTokenSigner;
+import com.course.modules.session.service.SessionService;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phần CPU của SessionService.generateQrToken ở hai chế độ attendance.qr.mode (random / signed)
+ * và phần xác thực token signed khi sinh viên quét.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QrTokenBenchmark {
+
+    private static final long SESSION_ID = 1234L;
+
+    private QrTokenSigner signer;
+    private LocalDateTime expiresAt;
+    private String signedToken;
+
+    @Setup
+    public void setUp() {
+        signer = new QrTokenSigner("signed", 30, "benchmarkQrSigningKeyForHmacTokens");
+        expiresAt = LocalDateTime.now().plusHours(1);
+        signedToken = signer.currentToken(SESSION_ID, expiresAt);
+    }
+
+    @Benchmark
+    public String generateRandom() {
+        return SessionService.randomQrToken();
+    }
+
+    @Benchmark
+    public String generateSigned() {
+        return signer.currentToken(SESSION_ID, expiresAt);
+    }
+
+    @Benchmark
+    public QrTokenSigner.Verification verifySigned() {
+        return signer.verify(SESSION_ID, signedToken);
+    }
+}
@@ -0,0 +1,67 @@
+package com.course.core.auth.controller;
+
+import com.course.core.auth.dto.ProvisioningJobDto;
+import com.course.core.auth.dto.ProvisioningRequest;
+import com.course.core.auth.service.AccountProvisioningService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/admin/accounts/provisioning")
+@CrossOrigin(origins = "*", maxAge = 3600)
+@Tag(name = "Account Provisioning", description = "Bulk creation of user accounts (Admin only)")
+public class AccountProvisioningController {
+
+    private final AccountProvisioningService provisioningService;
+
+    public AccountProvisioningController(AccountProvisioningService provisioningService) {
+        this.provisioningService = provisioningService;
+    }
+
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Start a bulk account provisioning job",
+            description = "Accounts are validated, hashed in parallel and inserted in batches in the background. Poll the returned job for progress",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Job accepted",
+                    content = @Content(schema = @Schema(implementation = ProvisioningJobDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input or too many jobs queued")
+    })
+    public ResponseEntity<?> submit(@Valid @RequestBody ProvisioningRequest request) {
+        try {
+            ProvisioningJobDto job = provisioningService.submit(request.getAccounts());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new AuthController.ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Get provisioning job progress",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Job progress",
+                    content = @Content(schema = @Schema(implementation = ProvisioningJobDto.class))),
+            @ApiResponse(responseCode = "404", description = "Job not found")
+    })
+    public ResponseEntity<?> getJob(@Parameter(description = "Job ID") @PathVariable String jobId) {
+        try {
+            return ResponseEntity.ok(provisioningService.getJob(jobId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new AuthController.ErrorResponse(e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.course.core.auth.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProvisioningJobDto {
+    private String jobId;
+    private Status status;
+    private long total;
+    private long processed; // Số tài khoản đã xử lý xong (tạo được hoặc lỗi)
+    private long created;
+    private long failed;
+    private double percent;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private List<RowError> errors;
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class RowError {
+        private int index; // Vị trí trong danh sách accounts của request (bắt đầu từ 0)
+        private String username;
+        private String message;
+    }
+}
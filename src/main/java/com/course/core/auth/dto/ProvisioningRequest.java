@@ -0,0 +1,18 @@
+package com.course.core.auth.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProvisioningRequest {
+    @NotEmpty(message = "At least one account is required")
+    @Valid
+    private List<SignupRequest> accounts;
+}
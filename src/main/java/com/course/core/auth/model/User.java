@@ -1,5 +1,6 @@
 package com.course.core.auth.model;
 
+import com.course.core.id.AssignedIdEntity;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -12,9 +13,9 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class User {
+public class User extends AssignedIdEntity {
+    // Id do service cấp (IdBlockAllocator) trước khi mở transaction, xem AssignedIdEntity
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @Column(nullable = false, unique = true, length = 50)
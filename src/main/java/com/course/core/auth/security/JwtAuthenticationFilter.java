@@ -2,6 +2,7 @@ package com.course.core.auth.security;
 
 import com.course.core.auth.service.JwtTokenProvider;
 import com.course.core.auth.service.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -34,10 +35,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-                String username = tokenProvider.getUsernameFromToken(jwt);
+            // Xác thực và lấy claims trong 1 lần parse
+            Claims claims = StringUtils.hasText(jwt) ? tokenProvider.verifyToken(jwt) : null;
+            if (claims != null) {
 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                // Role và studentId nằm trong token nên không cần tra bảng users; token cũ thiếu claims thì tra DB
+                UserDetails userDetails = tokenProvider.getAuthenticatedUser(claims);
+                if (userDetails == null) {
+                    userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+                }
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -1,6 +1,7 @@
 package com.course.core.auth.security;
 
 import com.course.core.auth.service.UserDetailsServiceImpl;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -54,6 +55,8 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                // Response streaming: lượt dispatch ASYNC đã được kiểm tra quyền ở request gốc
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/attendance/scan/**").permitAll() // Allow QR scan without pre-auth (will verify in controller)
                 .requestMatchers("/api/admin/**").hasRole("ADMIN")
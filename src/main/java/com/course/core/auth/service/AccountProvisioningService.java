@@ -0,0 +1,341 @@
+package com.course.core.auth.service;
+
+import com.course.core.auth.dto.ProvisioningJobDto;
+import com.course.core.auth.dto.SignupRequest;
+import com.course.core.auth.model.UserRole;
+import com.course.core.auth.repository.UserRepository;
+import com.course.core.id.IdBlockAllocator;
+import com.course.modules.student.repository.StudentRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Tạo tài khoản hàng loạt (ví dụ toàn bộ sinh viên của một học kỳ) dưới dạng job chạy nền.
+ * Mỗi chunk: kiểm tra trùng username/email và studentId bằng truy vấn IN, băm BCrypt song song trên
+ * pool giới hạn (auth.provisioning.hash-threads, mặc định bằng số core), rồi INSERT bảng users bằng JDBC batch.
+ * Tiến độ đọc qua getJob().
+ */
+@Slf4j
+@Service
+public class AccountProvisioningService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO users (id, username, password, email, full_name, role, student_id, created_at, updated_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final UserRepository userRepository;
+    private final StudentRepository studentRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final JdbcTemplate jdbcTemplate;
+    private final IdBlockAllocator idBlockAllocator;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int maxErrors;
+    private final int retainedJobs;
+
+    private final ExecutorService jobRunner;
+    private final ExecutorService hashPool;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public AccountProvisioningService(UserRepository userRepository,
+                                      StudentRepository studentRepository,
+                                      PasswordEncoder passwordEncoder,
+                                      JdbcTemplate jdbcTemplate,
+                                      IdBlockAllocator idBlockAllocator,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${auth.provisioning.hash-threads:0}") int hashThreads,
+                                      @Value("${auth.provisioning.chunk-size:500}") int chunkSize,
+                                      @Value("${auth.provisioning.queue-capacity:10}") int queueCapacity,
+                                      @Value("${auth.provisioning.max-errors:1000}") int maxErrors,
+                                      @Value("${auth.provisioning.retained-jobs:100}") int retainedJobs) {
+        this.userRepository = userRepository;
+        this.studentRepository = studentRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.jdbcTemplate = jdbcTemplate;
+        this.idBlockAllocator = idBlockAllocator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+        this.retainedJobs = retainedJobs;
+
+        int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger hashThreadIds = new AtomicInteger();
+        this.hashPool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "account-provisioning-hash-" + hashThreadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // Chạy lần lượt từng job (mỗi job đã dùng hết các core để băm), hàng chờ có giới hạn
+        this.jobRunner = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "account-provisioning");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobRunner.shutdownNow();
+        hashPool.shutdownNow();
+    }
+
+    public ProvisioningJobDto submit(List<SignupRequest> accounts) {
+        Job job = new Job(UUID.randomUUID().toString(), accounts.size());
+        jobs.put(job.id, job);
+        try {
+            jobRunner.execute(() -> run(job, accounts));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw new RuntimeException("Too many provisioning jobs queued, please retry later");
+        }
+        evictFinishedJobs();
+        return job.toDto();
+    }
+
+    public ProvisioningJobDto getJob(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new RuntimeException("Provisioning job not found: " + jobId);
+        }
+        return job.toDto();
+    }
+
+    private void run(Job job, List<SignupRequest> accounts) {
+        job.status = ProvisioningJobDto.Status.RUNNING;
+        job.startedAt = LocalDateTime.now();
+        try {
+            Set<String> seenUsernames = new HashSet<>();
+            Set<String> seenEmails = new HashSet<>();
+            List<Pending> chunk = new ArrayList<>(chunkSize);
+            for (int i = 0; i < accounts.size(); i++) {
+                SignupRequest account = accounts.get(i);
+                String error = validate(account, seenUsernames, seenEmails);
+                if (error != null) {
+                    job.fail(i, account.getUsername(), error);
+                    continue;
+                }
+                chunk.add(new Pending(i, account));
+                if (chunk.size() >= chunkSize) {
+                    provisionChunk(job, chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                provisionChunk(job, chunk);
+            }
+            job.finishedAt = LocalDateTime.now();
+            job.status = ProvisioningJobDto.Status.COMPLETED;
+        } catch (RuntimeException e) {
+            log.error("Provisioning job {} failed", job.id, e);
+            job.finishedAt = LocalDateTime.now();
+            job.status = ProvisioningJobDto.Status.FAILED;
+        }
+    }
+
+    private String validate(SignupRequest account, Set<String> seenUsernames, Set<String> seenEmails) {
+        if (account.getRole() == UserRole.STUDENT && account.getStudentId() == null) {
+            return "Student ID is required for STUDENT role";
+        }
+        if (!seenUsernames.add(key(account.getUsername()))) {
+            return "Duplicate username in request";
+        }
+        if (!seenEmails.add(key(account.getEmail()))) {
+            return "Duplicate email in request";
+        }
+        return null;
+    }
+
+    private void provisionChunk(Job job, List<Pending> chunk) {
+        // Kiểm tra trùng theo tập: 3 truy vấn IN cho cả chunk
+        Set<String> existingUsernames = userRepository.findExistingUsernames(
+                        chunk.stream().map(p -> p.account.getUsername()).collect(Collectors.toList()))
+                .stream().map(AccountProvisioningService::key).collect(Collectors.toSet());
+        Set<String> existingEmails = userRepository.findExistingEmails(
+                        chunk.stream().map(p -> p.account.getEmail()).collect(Collectors.toList()))
+                .stream().map(AccountProvisioningService::key).collect(Collectors.toSet());
+        List<Long> studentIds = chunk.stream().map(p -> p.account.getStudentId())
+                .filter(id -> id != null).collect(Collectors.toList());
+        Set<Long> existingStudents = studentIds.isEmpty() ? Set.of()
+                : new HashSet<>(studentRepository.findExistingIds(studentIds));
+
+        List<Pending> valid = new ArrayList<>(chunk.size());
+        for (Pending p : chunk) {
+            SignupRequest a = p.account;
+            if (existingUsernames.contains(key(a.getUsername()))) {
+                job.fail(p.index, a.getUsername(), "Username is already taken");
+            } else if (existingEmails.contains(key(a.getEmail()))) {
+                job.fail(p.index, a.getUsername(), "Email is already in use");
+            } else if (a.getStudentId() != null && !existingStudents.contains(a.getStudentId())) {
+                job.fail(p.index, a.getUsername(), "Student with ID " + a.getStudentId() + " does not exist");
+            } else {
+                valid.add(p);
+            }
+        }
+        if (valid.isEmpty()) return;
+
+        // BCrypt chiếm gần hết thời gian: băm song song trên mọi core
+        CompletableFuture.allOf(valid.stream()
+                .map(p -> CompletableFuture.runAsync(
+                        () -> p.passwordHash = passwordEncoder.encode(p.account.getPassword()), hashPool))
+                .toArray(CompletableFuture[]::new)).join();
+
+        // Id lấy theo khối từ id_sequence (dùng chung với nextId của các entity), không dùng auto_increment
+        long firstId = idBlockAllocator.allocate(IdBlockAllocator.USERS, valid.size());
+        for (int i = 0; i < valid.size(); i++) {
+            valid.get(i).id = firstId + i;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            transactionTemplate.executeWithoutResult(tx -> jdbcTemplate.batchUpdate(INSERT_SQL, valid, valid.size(),
+                    (ps, p) -> bind(p, now, ps)));
+            job.created.addAndGet(valid.size());
+            job.processed.addAndGet(valid.size());
+        } catch (DataAccessException | TransactionException e) {
+            // Tài khoản có thể được tạo đồng thời (ví dụ qua signup): ghi lại từng dòng để báo lỗi chính xác
+            log.warn("Batch insert of {} users failed, retrying row by row: {}", valid.size(), e.getMessage());
+            for (Pending p : valid) {
+                try {
+                    jdbcTemplate.update(con -> {
+                        PreparedStatement ps = con.prepareStatement(INSERT_SQL);
+                        bind(p, now, ps);
+                        return ps;
+                    });
+                    job.created.incrementAndGet();
+                    job.processed.incrementAndGet();
+                } catch (DuplicateKeyException duplicate) {
+                    job.fail(p.index, p.account.getUsername(), "Username or email already exists");
+                } catch (DataAccessException rowError) {
+                    job.fail(p.index, p.account.getUsername(), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private static void bind(Pending p, Timestamp now, PreparedStatement ps) throws SQLException {
+        SignupRequest a = p.account;
+        ps.setLong(1, p.id);
+        ps.setString(2, a.getUsername());
+        ps.setString(3, p.passwordHash);
+        ps.setString(4, a.getEmail());
+        ps.setString(5, a.getFullName());
+        ps.setString(6, a.getRole().name());
+        ps.setObject(7, a.getStudentId());
+        ps.setTimestamp(8, now);
+        ps.setTimestamp(9, now);
+    }
+
+    // Giữ lại tối đa retained-jobs job; bỏ các job đã xong cũ nhất trước
+    private void evictFinishedJobs() {
+        if (jobs.size() <= retainedJobs) return;
+        List<Job> finished = jobs.values().stream()
+                .filter(j -> j.finishedAt != null)
+                .sorted((a, b) -> a.finishedAt.compareTo(b.finishedAt))
+                .collect(Collectors.toList());
+        Iterator<Job> it = finished.iterator();
+        while (jobs.size() > retainedJobs && it.hasNext()) {
+            jobs.remove(it.next().id);
+        }
+    }
+
+    private static String key(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static class Pending {
+        private final int index;
+        private final SignupRequest account;
+        private volatile String passwordHash;
+        private long id;
+
+        Pending(int index, SignupRequest account) {
+            this.index = index;
+            this.account = account;
+        }
+    }
+
+    private class Job {
+        private final String id;
+        private final long total;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong created = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final List<ProvisioningJobDto.RowError> errors = new ArrayList<>();
+        private volatile ProvisioningJobDto.Status status = ProvisioningJobDto.Status.QUEUED;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+
+        Job(String id, long total) {
+            this.id = id;
+            this.total = total;
+        }
+
+        void fail(int index, String username, String message) {
+            failed.incrementAndGet();
+            processed.incrementAndGet();
+            synchronized (errors) {
+                if (errors.size() < maxErrors) {
+                    errors.add(ProvisioningJobDto.RowError.builder()
+                            .index(index)
+                            .username(username)
+                            .message(message)
+                            .build());
+                }
+            }
+        }
+
+        ProvisioningJobDto toDto() {
+            long done = processed.get();
+            List<ProvisioningJobDto.RowError> errorsCopy;
+            synchronized (errors) {
+                errorsCopy = new ArrayList<>(errors);
+            }
+            return ProvisioningJobDto.builder()
+                    .jobId(id)
+                    .status(status)
+                    .total(total)
+                    .processed(done)
+                    .created(created.get())
+                    .failed(failed.get())
+                    .percent(total > 0 ? (double) done / total * 100 : 100)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .errors(errorsCopy)
+                    .build();
+        }
+    }
+}
@@ -7,6 +7,8 @@ import com.course.core.auth.dto.UserDto;
 import com.course.core.auth.model.User;
 import com.course.core.auth.model.UserRole;
 import com.course.core.auth.repository.UserRepository;
+import com.course.core.auth.security.AuthenticatedUser;
+import com.course.core.id.IdBlockAllocator;
 import com.course.modules.student.repository.StudentRepository;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -14,7 +16,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class AuthService {
@@ -25,23 +28,40 @@ public class AuthService {
     private final JwtTokenProvider jwtTokenProvider;
     private final UserMapper userMapper;
     private final StudentRepository studentRepository;
+    private final IdBlockAllocator idBlockAllocator;
+    private final TransactionTemplate transactionTemplate;
 
     public AuthService(UserRepository userRepository,
                        PasswordEncoder passwordEncoder,
                        AuthenticationManager authenticationManager,
                        JwtTokenProvider jwtTokenProvider,
                        UserMapper userMapper,
-                       StudentRepository studentRepository) {
+                       StudentRepository studentRepository,
+                       IdBlockAllocator idBlockAllocator,
+                       PlatformTransactionManager transactionManager) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authenticationManager = authenticationManager;
         this.jwtTokenProvider = jwtTokenProvider;
         this.userMapper = userMapper;
         this.studentRepository = studentRepository;
+        this.idBlockAllocator = idBlockAllocator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    @Transactional
     public AuthResponse signup(SignupRequest request) {
+        // Cấp id và băm mật khẩu (BCrypt, chậm) trước khi mở transaction, không giữ connection trong lúc đó
+        Long userId = idBlockAllocator.nextId(IdBlockAllocator.USERS);
+        String password = passwordEncoder.encode(request.getPassword());
+        User user = transactionTemplate.execute(tx -> createUser(request, userId, password));
+
+        // Generate token
+        String token = jwtTokenProvider.generateToken(AuthenticatedUser.from(user));
+
+        return new AuthResponse(token, userMapper.toDto(user));
+    }
+
+    private User createUser(SignupRequest request, Long userId, String password) {
         // Validate username and email uniqueness
         if (userRepository.existsByUsername(request.getUsername())) {
             throw new RuntimeException("Username is already taken");
@@ -63,20 +83,16 @@ public class AuthService {
 
         // Create user
         User user = User.builder()
+                .id(userId)
                 .username(request.getUsername())
-                .password(passwordEncoder.encode(request.getPassword()))
+                .password(password)
                 .email(request.getEmail())
                 .fullName(request.getFullName())
                 .role(request.getRole())
                 .studentId(request.getStudentId())
                 .build();
 
-        user = userRepository.save(user);
-
-        // Generate token
-        String token = jwtTokenProvider.generateTokenFromUsername(user.getUsername());
-
-        return new AuthResponse(token, userMapper.toDto(user));
+        return userRepository.save(user);
     }
 
     public AuthResponse login(LoginRequest request) {
@@ -1,7 +1,11 @@
 package com.course.core.auth.service;
 
+import com.course.core.auth.model.UserRole;
+import com.course.core.auth.security.AuthenticatedUser;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -9,26 +13,74 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+@Slf4j
 @Component
 public class JwtTokenProvider {
 
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_STUDENT_ID = "studentId";
+
     @Value("${jwt.secret:mySecretKeyForJWTTokenGenerationThatIsAtLeast256BitsLong}")
     private String jwtSecret;
 
     @Value("${jwt.expiration:86400000}") // 24 hours in milliseconds
     private long jwtExpirationMs;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+    @Value("${jwt.verified-cache.enabled:true}")
+    private boolean verifiedCacheEnabled;
+
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private int verifiedCacheMaxSize;
+
+    // Key và parser dựng 1 lần, dùng lại cho mọi request (cả hai đều thread-safe)
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    // Cache token đã xác thực: SHA-256(token) -> claims, để request lặp lại không phải verify HMAC-SHA512 lần nữa
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
 
     public String generateToken(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return generateToken(user);
+        }
         UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
         return generateTokenFromUsername(userPrincipal.getUsername());
     }
 
+    // Token kèm claims role/studentId để filter không phải tra bảng users ở mỗi request
+    public String generateToken(AuthenticatedUser user) {
+        Date now = new Date();
+        Date expiryDate = new Date(now.getTime() + jwtExpirationMs);
+
+        JwtBuilder builder = Jwts.builder()
+                .setSubject(user.getUsername())
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_ROLE, user.getRole().name())
+                .setIssuedAt(now)
+                .setExpiration(expiryDate);
+        if (user.getStudentId() != null) {
+            builder.claim(CLAIM_STUDENT_ID, user.getStudentId());
+        }
+        return builder.signWith(signingKey, SignatureAlgorithm.HS512).compact();
+    }
+
     public String generateTokenFromUsername(String username) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpirationMs);
@@ -37,36 +89,99 @@ public class JwtTokenProvider {
                 .setSubject(username)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+                .signWith(signingKey, SignatureAlgorithm.HS512)
                 .compact();
     }
 
-    public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-
-        return claims.getSubject();
-    }
+    /**
+     * Xác thực token và trả về claims chỉ với 1 lần parse; null nếu token không hợp lệ hoặc đã hết hạn.
+     */
+    public Claims verifyToken(String token) {
+        String cacheKey = null;
+        if (verifiedCacheEnabled) {
+            cacheKey = hash(token);
+            VerifiedToken cached = verifiedTokens.get(cacheKey);
+            if (cached != null) {
+                if (cached.expiresAtMillis > System.currentTimeMillis()) {
+                    return cached.claims;
+                }
+                verifiedTokens.remove(cacheKey, cached);
+                return null;
+            }
+        }
 
-    public boolean validateToken(String authToken) {
+        Claims claims;
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(authToken);
-            return true;
-        } catch (SecurityException | MalformedJwtException e) {
-            System.err.println("Invalid JWT signature: " + e.getMessage());
+            claims = jwtParser.parseClaimsJws(token).getBody();
         } catch (ExpiredJwtException e) {
-            System.err.println("JWT token is expired: " + e.getMessage());
+            log.debug("JWT token is expired: {}", e.getMessage());
+            return null;
         } catch (UnsupportedJwtException e) {
-            System.err.println("JWT token is unsupported: " + e.getMessage());
+            log.warn("JWT token is unsupported: {}", e.getMessage());
+            return null;
+        } catch (JwtException e) {
+            log.warn("Invalid JWT signature: {}", e.getMessage());
+            return null;
         } catch (IllegalArgumentException e) {
-            System.err.println("JWT claims string is empty: " + e.getMessage());
+            log.warn("JWT claims string is empty: {}", e.getMessage());
+            return null;
+        }
+
+        if (verifiedCacheEnabled && claims.getExpiration() != null) {
+            if (verifiedTokens.size() >= verifiedCacheMaxSize) {
+                evictVerifiedTokens();
+            }
+            verifiedTokens.put(cacheKey, new VerifiedToken(claims, claims.getExpiration().getTime()));
+        }
+        return claims;
+    }
+
+    /**
+     * Dựng principal từ claims. Trả về null nếu token không có claim role (token cũ) để caller tra DB.
+     */
+    public AuthenticatedUser getAuthenticatedUser(Claims claims) {
+        String role = claims.get(CLAIM_ROLE, String.class);
+        if (role == null) {
+            return null;
+        }
+        Number userId = claims.get(CLAIM_USER_ID, Number.class);
+        Number studentId = claims.get(CLAIM_STUDENT_ID, Number.class);
+        return new AuthenticatedUser(
+                userId != null ? userId.longValue() : null,
+                claims.getSubject(),
+                null,
+                UserRole.valueOf(role),
+                studentId != null ? studentId.longValue() : null);
+    }
+
+    // Bỏ token hết hạn trước; nếu vẫn đầy thì bỏ bớt 1/10 số phần tử (thứ tự bất kỳ)
+    private void evictVerifiedTokens() {
+        long now = System.currentTimeMillis();
+        verifiedTokens.values().removeIf(v -> v.expiresAtMillis <= now);
+        int toRemove = verifiedTokens.size() - verifiedCacheMaxSize + Math.max(1, verifiedCacheMaxSize / 10);
+        Iterator<String> it = verifiedTokens.keySet().iterator();
+        while (toRemove-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static class VerifiedToken {
+        private final Claims claims;
+        private final long expiresAtMillis;
+
+        VerifiedToken(Claims claims, long expiresAtMillis) {
+            this.claims = claims;
+            this.expiresAtMillis = expiresAtMillis;
         }
-        return false;
     }
 }
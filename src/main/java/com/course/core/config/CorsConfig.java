@@ -13,6 +13,7 @@ public class CorsConfig implements WebMvcConfigurer {
                 .allowedOrigins("http://localhost:3000","http://localhost:3001" ) // your frontend
                 .allowedMethods("*")
                 .allowedHeaders("*")
+                .exposedHeaders("Retry-After", "Idempotent-Replayed") // Để app đọc được khi bị 429 / khi nhận kết quả gửi lại
                 .allowCredentials(false)
                 .maxAge(3600);
     }
@@ -0,0 +1,20 @@
+package com.course.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Một trang kết quả phân trang theo keyset. nextCursor là chuỗi mờ (opaque), client gửi lại nguyên văn
+ * để lấy trang kế tiếp; null khi đã hết dữ liệu.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor;
+    private boolean hasNext;
+}
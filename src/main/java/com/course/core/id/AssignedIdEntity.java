@@ -0,0 +1,33 @@
+package com.course.core.id;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Entity có id do ứng dụng cấp từ IdBlockAllocator trước khi mở transaction, thay cho @TableGenerator:
+ * generator của Hibernate lấy khối id mới bằng một connection thứ hai ngay trong transaction đang giữ connection,
+ * nên khi pool cạn các luồng chờ nhau đến hết connection-timeout.
+ * Id có sẵn trước khi lưu nên cần báo cho Spring Data dùng persist (INSERT) thay vì merge (SELECT rồi INSERT).
+ */
+@MappedSuperclass
+public abstract class AssignedIdEntity implements Persistable<Long> {
+
+    @Transient
+    private transient boolean newEntity = true;
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        newEntity = false;
+    }
+}
@@ -0,0 +1,87 @@
+package com.course.core.id;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Nguồn id duy nhất cho mọi entity (xem AssignedIdEntity): cấp một khối id liên tiếp từ bảng id_sequence
+ * (allocate: write-behind, import, provisioning, lập lịch buổi học) hoặc từng id một (nextId: tạo lẻ từng entity).
+ * Giữ quy ước của optimizer pooled mà @TableGenerator dùng trước đây: người đọc được giá trị V
+ * sở hữu [V - ALLOCATION_SIZE + 1, V]. Lấy n id thì ghi V + n và dùng [V - ALLOCATION_SIZE + 1, V - ALLOCATION_SIZE + n],
+ * nên các khối không bao giờ trùng nhau (kể cả giữa các instance).
+ */
+@Component
+public class IdBlockAllocator {
+
+    /** Số id nextId giữ trong bộ nhớ mỗi lần, cũng là độ lệch của quy ước pooled (khớp seed ở changelog 0012). */
+    public static final int ALLOCATION_SIZE = 50;
+
+    public static final String ATTENDANCE = "attendance";
+    public static final String STUDENT = "student";
+    public static final String COURSE = "course";
+    public static final String SESSION = "session";
+    public static final String USERS = "users";
+
+    private static final String SELECT_SQL = "SELECT next_val FROM id_sequence WHERE sequence_name = ? FOR UPDATE";
+    private static final String UPDATE_SQL = "UPDATE id_sequence SET next_val = ? WHERE sequence_name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public IdBlockAllocator(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Transaction riêng, commit ngay để khóa dòng id_sequence thật ngắn (giống Hibernate)
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Trả về id đầu tiên của khối count id liên tiếp.
+     */
+    public long allocate(String sequenceName, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        Long first = transactionTemplate.execute(tx -> {
+            Long current = jdbcTemplate.query(SELECT_SQL, rs -> rs.next() ? rs.getLong(1) : null, sequenceName);
+            if (current == null) {
+                throw new IllegalStateException("No id_sequence row for " + sequenceName);
+            }
+            jdbcTemplate.update(UPDATE_SQL, current + count, sequenceName);
+            return current - ALLOCATION_SIZE + 1;
+        });
+        return first;
+    }
+
+    /**
+     * Id tiếp theo từ khối đang giữ trong bộ nhớ, hết khối thì lấy khối ALLOCATION_SIZE id mới.
+     * Phải gọi ngoài transaction: lấy khối mới cần một connection, nếu caller đang giữ connection khác
+     * thì các luồng chờ khối có thể chiếm hết pool và kẹt nhau (đây là lý do không dùng @TableGenerator).
+     */
+    public long nextId(String sequenceName) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("nextId must be called outside a transaction");
+        }
+        Block block = blocks.computeIfAbsent(sequenceName, name -> new Block());
+        synchronized (block) {
+            if (block.next > block.last) {
+                block.next = allocate(sequenceName, ALLOCATION_SIZE);
+                block.last = block.next + ALLOCATION_SIZE - 1;
+            }
+            return block.next++;
+        }
+    }
+
+    private static class Block {
+        private long next = 1;
+        private long last = 0;
+    }
+}
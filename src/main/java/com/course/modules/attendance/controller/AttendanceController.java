@@ -1,10 +1,19 @@
 package com.course.modules.attendance.controller;
 
+import com.course.core.auth.security.AuthenticatedUser;
+import com.course.core.dto.CursorPage;
+import com.course.core.exception.ServiceUnavailableException;
 import com.course.modules.attendance.dto.AttendanceDto;
 import com.course.modules.attendance.dto.AttendanceStatisticsDto;
 import com.course.modules.attendance.dto.CheckInRequest;
+import com.course.modules.attendance.dto.CheckedInRegistryStatsDto;
 import com.course.modules.attendance.dto.QrVerificationResponse;
+import com.course.modules.attendance.dto.RateLimiterStatsDto;
+import com.course.modules.attendance.service.AttendanceExportService;
+import com.course.modules.attendance.service.AttendanceLiveFeed;
 import com.course.modules.attendance.service.AttendanceService;
+import com.course.modules.attendance.service.CheckInIdempotencyStore;
+import com.course.modules.attendance.service.CheckInRateLimiter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,12 +23,20 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -29,9 +46,21 @@ import java.util.List;
 public class AttendanceController {
 
     private final AttendanceService attendanceService;
+    private final AttendanceExportService attendanceExportService;
+    private final AttendanceLiveFeed attendanceLiveFeed;
+    private final CheckInRateLimiter checkInRateLimiter;
+    private final CheckInIdempotencyStore checkInIdempotencyStore;
 
-    public AttendanceController(AttendanceService attendanceService) {
+    public AttendanceController(AttendanceService attendanceService,
+                                AttendanceExportService attendanceExportService,
+                                AttendanceLiveFeed attendanceLiveFeed,
+                                CheckInRateLimiter checkInRateLimiter,
+                                CheckInIdempotencyStore checkInIdempotencyStore) {
         this.attendanceService = attendanceService;
+        this.attendanceExportService = attendanceExportService;
+        this.attendanceLiveFeed = attendanceLiveFeed;
+        this.checkInRateLimiter = checkInRateLimiter;
+        this.checkInIdempotencyStore = checkInIdempotencyStore;
     }
 
     // --- 1. API QUÉT MÃ QR (SCAN) ---
@@ -43,16 +72,19 @@ public class AttendanceController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "QR token valid",
                     content = @Content(schema = @Schema(implementation = QrVerificationResponse.class))),
-            @ApiResponse(responseCode = "400", description = "Invalid or expired QR token")
+            @ApiResponse(responseCode = "400", description = "Invalid or expired QR token"),
+            @ApiResponse(responseCode = "429", description = "Too many requests, see Retry-After")
     })
     public ResponseEntity<?> scanQr(
             @Parameter(description = "Session ID") @RequestParam Long sessionId,
             @Parameter(description = "QR Token string") @RequestParam String qrToken) {
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String username = authentication.getName();
-
-            QrVerificationResponse response = attendanceService.verifyQrToken(sessionId, qrToken, username);
+            AuthenticatedUser user = currentUser();
+            long retryAfter = checkInRateLimiter.tryAcquire(user.getId(), sessionId);
+            if (retryAfter > 0) {
+                return tooManyRequests(retryAfter);
+            }
+            QrVerificationResponse response = attendanceService.verifyQrToken(sessionId, qrToken, user);
 
             if (response.isValid()) {
                 return ResponseEntity.ok(response);
@@ -73,15 +105,43 @@ public class AttendanceController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Check-in successful",
                     content = @Content(schema = @Schema(implementation = AttendanceDto.class))),
-            @ApiResponse(responseCode = "400", description = "Invalid token, expired token, or duplicate check-in")
+            @ApiResponse(responseCode = "400", description = "Invalid token, expired token, or duplicate check-in"),
+            @ApiResponse(responseCode = "429", description = "Too many requests, see Retry-After"),
+            @ApiResponse(responseCode = "503", description = "Write-behind queue full, see Retry-After")
     })
-    public ResponseEntity<?> checkIn(@Valid @RequestBody CheckInRequest request) {
+    public ResponseEntity<?> checkIn(
+            @Valid @RequestBody CheckInRequest request,
+            @Parameter(description = "Client-generated key; retries with the same key return the first result")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String username = authentication.getName();
-
-            AttendanceDto attendance = attendanceService.checkIn(request, username);
+            AuthenticatedUser user = currentUser();
+            CheckInIdempotencyStore.Claim claim = null;
+            if (idempotencyKey != null) {
+                claim = checkInIdempotencyStore.claim(user.getId(), idempotencyKey, request.getSessionId());
+                if (!claim.isOwner()) {
+                    // Request gửi lại: trả kết quả của lần đầu, không tốn token của rate limiter
+                    return ResponseEntity.ok().header("Idempotent-Replayed", "true").body(claim.await());
+                }
+            }
+            long retryAfter = checkInRateLimiter.tryAcquire(user.getId(), request.getSessionId());
+            if (retryAfter > 0) {
+                if (claim != null) claim.fail(new RuntimeException("Too many requests, please retry later"));
+                return tooManyRequests(retryAfter);
+            }
+            AttendanceDto attendance;
+            try {
+                attendance = attendanceService.checkIn(request, user);
+            } catch (RuntimeException e) {
+                if (claim != null) claim.fail(e);
+                throw e;
+            }
+            if (claim != null) claim.complete(attendance);
             return ResponseEntity.ok(attendance);
+        } catch (ServiceUnavailableException e) {
+            // Hàng đợi write-behind đầy: lỗi tạm thời, client nên thử lại sau Retry-After
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                    .body(new ErrorResponse(e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
         }
@@ -111,6 +171,111 @@ public class AttendanceController {
         return ResponseEntity.ok(attendances);
     }
 
+    @GetMapping("/session/{sessionId}/page")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Get attendance list by session, cursor paginated (Admin only)",
+            description = "Attendance records of a session ordered by check-in time. Pass nextCursor from the previous page to continue",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page retrieved",
+                    content = @Content(schema = @Schema(implementation = CursorPage.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor")
+    })
+    public ResponseEntity<?> getAttendancePageBySession(
+            @Parameter(description = "Session ID") @PathVariable Long sessionId,
+            @Parameter(description = "Cursor returned by the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (max 200)") @RequestParam(defaultValue = "50") int size) {
+        try {
+            return ResponseEntity.ok(attendanceService.getAttendancePageBySession(sessionId, cursor, size));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/student/{studentId}/page")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STUDENT')")
+    @Operation(summary = "Get attendance history by student, cursor paginated",
+            description = "Attendance records of a student, newest first. Pass nextCursor from the previous page to continue",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page retrieved",
+                    content = @Content(schema = @Schema(implementation = CursorPage.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor")
+    })
+    public ResponseEntity<?> getAttendancePageByStudent(
+            @Parameter(description = "Student ID") @PathVariable Long studentId,
+            @Parameter(description = "Cursor returned by the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (max 200)") @RequestParam(defaultValue = "50") int size) {
+        try {
+            return ResponseEntity.ok(attendanceService.getAttendancePageByStudent(studentId, cursor, size));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Export attendance as CSV or NDJSON (Admin only)",
+            description = "Streams every attendance record of a course and/or session date range. Rows are written as they are read from the database",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Export stream"),
+            @ApiResponse(responseCode = "400", description = "Neither courseId nor a date range given")
+    })
+    public ResponseEntity<?> exportAttendance(
+            @Parameter(description = "Course ID") @RequestParam(required = false) Long courseId,
+            @Parameter(description = "First session date (inclusive), yyyy-MM-dd")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Last session date (inclusive), yyyy-MM-dd")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @Parameter(description = "csv or ndjson") @RequestParam(defaultValue = "csv") String format) {
+        AttendanceExportService.Format exportFormat;
+        try {
+            exportFormat = AttendanceExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("Unsupported format: " + format));
+        }
+        if (courseId == null && from == null && to == null) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("courseId or a date range is required"));
+        }
+
+        StreamingResponseBody body = out -> attendanceExportService.export(courseId, from, to, exportFormat, out);
+        boolean csv = exportFormat == AttendanceExportService.Format.CSV;
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"attendance." + (csv ? "csv" : "ndjson") + "\"")
+                .body(body);
+    }
+
+    @GetMapping(value = "/session/{sessionId}/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Live check-in feed of a session (Admin only)",
+            description = "Server-Sent Events stream: a 'snapshot' event with the current counts, then one 'check-in' event per committed check-in",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Event stream opened"),
+            @ApiResponse(responseCode = "503", description = "Too many subscribers, see Retry-After")
+    })
+    public ResponseEntity<?> streamSessionCheckIns(
+            @Parameter(description = "Session ID") @PathVariable Long sessionId) {
+        try {
+            SseEmitter emitter = attendanceLiveFeed.subscribe(sessionId);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                    .header("X-Accel-Buffering", "no") // Không để nginx gom bộ đệm sự kiện
+                    .body(emitter);
+        } catch (ServiceUnavailableException e) {
+            // Đã đủ số dashboard tối đa: lỗi tạm thời, client nên thử lại sau Retry-After
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                    .body(new ErrorResponse(e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
     // --- 4. CÁC API THỐNG KÊ (STATISTICS) ---
 
     @GetMapping("/statistics")
@@ -164,6 +329,50 @@ public class AttendanceController {
         }
     }
 
+    @PostMapping("/statistics/counters/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Rebuild attendance counters (Admin only)",
+            description = "Recompute the pre-aggregated attendance_counter table from the attendance table",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<Void> rebuildCounters() {
+        attendanceService.rebuildCounters();
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/statistics/checked-in-registry")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Get checked-in bitmap memory usage (Admin only)",
+            description = "Per-session size of the in-memory checked-in bitmaps used for duplicate checks and live counts",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<CheckedInRegistryStatsDto> getCheckedInRegistryStats() {
+        return ResponseEntity.ok(attendanceService.getCheckedInRegistryStats());
+    }
+
+    @GetMapping("/statistics/rate-limiter")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Get scan/check-in rate limiter metrics (Admin only)",
+            description = "Allowed and rejected (429) scan/check-in requests since startup, and the number of tracked buckets",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<RateLimiterStatsDto> getRateLimiterStats() {
+        return ResponseEntity.ok(checkInRateLimiter.getStats());
+    }
+
+    // 429 dựng sẵn, không đi qua exception
+    private ResponseEntity<?> tooManyRequests(long retryAfterSeconds) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .body(new ErrorResponse("Too many requests, please retry later"));
+    }
+
+    // Principal được dựng từ claims của JWT (không tra bảng users)
+    private AuthenticatedUser currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof AuthenticatedUser user)) {
+            throw new RuntimeException("User not authenticated");
+        }
+        return user;
+    }
+
     // Inner class for error responses
     public static class ErrorResponse {
         private String message;
@@ -0,0 +1,30 @@
+package com.course.modules.attendance.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CheckedInRegistryStatsDto {
+    private int sessions;
+    private int maxSessions;
+    private long totalSizeInBytes;
+    private List<SessionEntry> entries;
+
+    // Bộ nhớ dùng cho từng buổi học
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class SessionEntry {
+        private Long sessionId;
+        private long checkedInCount;
+        private long lateCount;
+        private long sizeInBytes;
+    }
+}
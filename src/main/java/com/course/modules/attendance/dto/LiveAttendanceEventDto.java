@@ -0,0 +1,25 @@
+package com.course.modules.attendance.dto;
+
+import com.course.modules.attendance.model.AttendanceStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Payload gọn của luồng SSE: chỉ check-in mới (delta) kèm số đã điểm danh hiện tại
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LiveAttendanceEventDto {
+    private Long attendanceId;
+    private Long studentId;
+    private String studentNumber;
+    private String studentName;
+    private AttendanceStatus status;
+    private LocalDateTime checkedAt;
+    private long checkedInCount;
+    private long lateCount;
+}
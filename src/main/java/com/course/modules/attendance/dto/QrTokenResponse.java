@@ -12,4 +12,5 @@ public class QrTokenResponse {
     private String qrToken;
     private String checkInUrl;
     private String expiresAt;
+    private Long rotationSeconds; // Chỉ có ở chế độ signed: token đổi sau mỗi rotationSeconds giây
 }
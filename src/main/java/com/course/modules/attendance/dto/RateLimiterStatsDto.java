@@ -0,0 +1,17 @@
+package com.course.modules.attendance.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RateLimiterStatsDto {
+    private boolean enabled;
+    private long allowed;
+    private long rejectedByStudent;
+    private long rejectedBySession;
+    private int trackedStudents;
+    private int trackedSessions;
+}
@@ -0,0 +1,26 @@
+package com.course.modules.attendance.event;
+
+import com.course.modules.attendance.model.AttendanceStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Phát ra khi một check-in được ghi xuống DB. Listener nên dùng @TransactionalEventListener (AFTER_COMMIT)
+ * để chỉ xử lý check-in đã commit.
+ */
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor
+public class AttendanceCheckedInEvent {
+    private final Long attendanceId;
+    private final Long courseId;
+    private final Long sessionId;
+    private final Long studentId;
+    private final String studentNumber;
+    private final String studentName;
+    private final AttendanceStatus status;
+    private final LocalDateTime checkedAt;
+}
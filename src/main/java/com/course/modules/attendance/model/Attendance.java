@@ -1,5 +1,6 @@
 package com.course.modules.attendance.model;
 
+import com.course.core.id.AssignedIdEntity;
 import com.course.modules.session.model.Session;
 import com.course.modules.student.model.Student;
 import jakarta.persistence.*;
@@ -8,15 +9,17 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "attendance")
+@Table(name = "attendance", uniqueConstraints = {
+        @UniqueConstraint(name = "uq_attendance_session_student", columnNames = {"session_id", "student_id"})
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Attendance {
+public class Attendance extends AssignedIdEntity {
+    // Id cấp từ IdBlockAllocator.nextId(ATTENDANCE) trước khi mở transaction check-in (hoặc theo khối ở write-behind)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,8 @@
+package com.course.modules.attendance.model;
+
+public enum AttendanceCounterScope {
+    GLOBAL,
+    COURSE,
+    SESSION,
+    STUDENT
+}
@@ -1,9 +1,15 @@
 package com.course.modules.attendance.repository;
 
+import com.course.modules.attendance.dto.AttendanceDto;
 import com.course.modules.attendance.model.Attendance;
+import com.course.modules.attendance.model.AttendanceStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +18,63 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
     List<Attendance> findBySessionId(Long sessionId);
     List<Attendance> findByStudentId(Long studentId);
     Optional<Attendance> findBySessionIdAndStudentId(Long sessionId, Long studentId);
+
+    // Dựng AttendanceDto ngay trong 1 câu SQL (join student, session, course) thay vì nạp lười từng quan hệ cho mỗi dòng
+    @Query("SELECT new com.course.modules.attendance.dto.AttendanceDto("
+            + "a.id, s.id, st.id, st.studentNumber, st.fullName, a.status, a.checkedAt, c.title) "
+            + "FROM Attendance a JOIN a.session s JOIN s.course c JOIN a.student st "
+            + "WHERE s.id = :sessionId ORDER BY a.checkedAt, a.id")
+    List<AttendanceDto> findDtosBySessionId(@Param("sessionId") Long sessionId);
+
+    @Query("SELECT new com.course.modules.attendance.dto.AttendanceDto("
+            + "a.id, s.id, st.id, st.studentNumber, st.fullName, a.status, a.checkedAt, c.title) "
+            + "FROM Attendance a JOIN a.session s JOIN s.course c JOIN a.student st "
+            + "WHERE st.id = :studentId ORDER BY a.checkedAt, a.id")
+    List<AttendanceDto> findDtosByStudentId(@Param("studentId") Long studentId);
+
+    // Phân trang keyset theo (checked_at, id): mỗi trang chỉ đọc pageable.size dòng trên index, không OFFSET.
+    // Danh sách theo buổi học tăng dần theo thời gian check-in
+    @Query("SELECT new com.course.modules.attendance.dto.AttendanceDto("
+            + "a.id, s.id, st.id, st.studentNumber, st.fullName, a.status, a.checkedAt, c.title) "
+            + "FROM Attendance a JOIN a.session s JOIN s.course c JOIN a.student st "
+            + "WHERE s.id = :sessionId ORDER BY a.checkedAt, a.id")
+    List<AttendanceDto> findDtoPageBySessionId(@Param("sessionId") Long sessionId, Pageable pageable);
+
+    @Query("SELECT new com.course.modules.attendance.dto.AttendanceDto("
+            + "a.id, s.id, st.id, st.studentNumber, st.fullName, a.status, a.checkedAt, c.title) "
+            + "FROM Attendance a JOIN a.session s JOIN s.course c JOIN a.student st "
+            + "WHERE s.id = :sessionId "
+            + "AND (a.checkedAt > :checkedAt OR (a.checkedAt = :checkedAt AND a.id > :id)) "
+            + "ORDER BY a.checkedAt, a.id")
+    List<AttendanceDto> findDtoPageBySessionIdAfter(@Param("sessionId") Long sessionId,
+                                                    @Param("checkedAt") LocalDateTime checkedAt,
+                                                    @Param("id") Long id,
+                                                    Pageable pageable);
+
+    // Lịch sử của sinh viên: mới nhất trước
+    @Query("SELECT new com.course.modules.attendance.dto.AttendanceDto("
+            + "a.id, s.id, st.id, st.studentNumber, st.fullName, a.status, a.checkedAt, c.title) "
+            + "FROM Attendance a JOIN a.session s JOIN s.course c JOIN a.student st "
+            + "WHERE st.id = :studentId ORDER BY a.checkedAt DESC, a.id DESC")
+    List<AttendanceDto> findDtoPageByStudentId(@Param("studentId") Long studentId, Pageable pageable);
+
+    @Query("SELECT new com.course.modules.attendance.dto.AttendanceDto("
+            + "a.id, s.id, st.id, st.studentNumber, st.fullName, a.status, a.checkedAt, c.title) "
+            + "FROM Attendance a JOIN a.session s JOIN s.course c JOIN a.student st "
+            + "WHERE st.id = :studentId "
+            + "AND (a.checkedAt < :checkedAt OR (a.checkedAt = :checkedAt AND a.id < :id)) "
+            + "ORDER BY a.checkedAt DESC, a.id DESC")
+    List<AttendanceDto> findDtoPageByStudentIdBefore(@Param("studentId") Long studentId,
+                                                     @Param("checkedAt") LocalDateTime checkedAt,
+                                                     @Param("id") Long id,
+                                                     Pageable pageable);
+
+    // Chỉ lấy (studentId, status) của một buổi để nạp bitmap, không nạp entity
+    @Query("SELECT a.student.id AS studentId, a.status AS status FROM Attendance a WHERE a.session.id = :sessionId")
+    List<StudentStatusView> findStudentStatusesBySessionId(@Param("sessionId") Long sessionId);
+
+    interface StudentStatusView {
+        Long getStudentId();
+        AttendanceStatus getStatus();
+    }
 }
@@ -0,0 +1,197 @@
+package com.course.modules.attendance.service;
+
+import com.course.modules.attendance.model.AttendanceCounterScope;
+import com.course.modules.attendance.model.AttendanceStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bộ đếm có mặt/đi trễ tổng hợp sẵn trong bảng attendance_counter (theo toàn hệ thống, khóa học, buổi học, sinh viên).
+ * Được cộng dồn trong cùng transaction với check-in, nên thống kê chỉ cần đọc vài dòng thay vì quét bảng attendance.
+ * Mỗi phạm vi chia thành attendance.counters.shards shard (chọn ngẫu nhiên khi ghi, cộng lại khi đọc)
+ * để các check-in đồng thời của cùng một buổi không phải chờ khóa trên cùng một dòng.
+ */
+@Service
+public class AttendanceCounterService {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO attendance_counter (scope, scope_id, shard, present_count, late_count) VALUES (?, ?, ?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE present_count = present_count + ?, late_count = late_count + ?";
+
+    private static final String SELECT_SQL =
+            "SELECT COALESCE(SUM(present_count), 0), COALESCE(SUM(late_count), 0) "
+                    + "FROM attendance_counter WHERE scope = ? AND scope_id = ?";
+
+    // Các khóa cần tính lại: có dữ liệu attendance hoặc đã có dòng đếm (để đưa về 0 nếu attendance đã bị xóa)
+    private static final String SESSION_KEYS_SQL =
+            "SELECT DISTINCT session_id FROM attendance "
+                    + "UNION SELECT scope_id FROM attendance_counter WHERE scope = 'SESSION'";
+    private static final String STUDENT_KEYS_SQL =
+            "SELECT DISTINCT student_id FROM attendance "
+                    + "UNION SELECT scope_id FROM attendance_counter WHERE scope = 'STUDENT'";
+    private static final String COURSE_KEYS_SQL =
+            "SELECT DISTINCT s.course_id FROM attendance a JOIN session s ON s.id = a.session_id "
+                    + "UNION SELECT scope_id FROM attendance_counter WHERE scope = 'COURSE'";
+
+    private static final String COUNT_COLUMNS =
+            "COALESCE(SUM(CASE WHEN a.status = 'PRESENT' THEN 1 ELSE 0 END), 0), "
+                    + "COALESCE(SUM(CASE WHEN a.status = 'LATE' THEN 1 ELSE 0 END), 0) ";
+    private static final String GLOBAL_COUNT_SQL = "SELECT " + COUNT_COLUMNS + "FROM attendance a";
+    private static final String SESSION_COUNT_SQL = "SELECT " + COUNT_COLUMNS + "FROM attendance a WHERE a.session_id = ?";
+    private static final String STUDENT_COUNT_SQL = "SELECT " + COUNT_COLUMNS + "FROM attendance a WHERE a.student_id = ?";
+    private static final String COURSE_COUNT_SQL = "SELECT " + COUNT_COLUMNS
+            + "FROM attendance a JOIN session s ON s.id = a.session_id WHERE s.course_id = ?";
+
+    private static final String LOCK_SQL =
+            "SELECT shard FROM attendance_counter WHERE scope = ? AND scope_id = ? FOR UPDATE";
+
+    // Ghi đè (không cộng dồn) giá trị vừa đếm vào shard 0, các shard còn lại về 0
+    private static final String RESET_SQL =
+            "INSERT INTO attendance_counter (scope, scope_id, shard, present_count, late_count) VALUES (?, ?, 0, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE present_count = ?, late_count = ?";
+    private static final String CLEAR_SHARDS_SQL =
+            "UPDATE attendance_counter SET present_count = 0, late_count = 0 WHERE scope = ? AND scope_id = ? AND shard <> 0";
+
+    private static final RowMapper<Counts> COUNTS_MAPPER = (rs, i) -> new Counts(rs.getLong(1), rs.getLong(2));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int shards;
+
+    public AttendanceCounterService(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${attendance.counters.shards:8}") int shards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+    }
+
+    /**
+     * Cộng một check-in vào các bộ đếm. Phải chạy trong transaction của check-in.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCheckIn(Long courseId, Long sessionId, Long studentId, AttendanceStatus status) {
+        recordCheckIns(List.of(new CheckIn(courseId, sessionId, studentId, status)));
+    }
+
+    /**
+     * Cộng nhiều check-in (ví dụ một batch write-behind) bằng một JDBC batch duy nhất.
+     * Các dòng được cập nhật theo thứ tự phạm vi cố định để tránh deadlock giữa các transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCheckIns(List<CheckIn> checkIns) {
+        // TreeMap: các dòng luôn được khóa theo cùng một thứ tự (scope, scopeId)
+        Map<String, long[]> deltas = new TreeMap<>();
+        for (AttendanceCounterScope scope : AttendanceCounterScope.values()) {
+            for (CheckIn c : checkIns) {
+                long[] delta = deltas.computeIfAbsent(scope.name() + ":" + scopeId(scope, c), k -> new long[2]);
+                if (c.getStatus() == AttendanceStatus.LATE) delta[1]++;
+                else delta[0]++;
+            }
+        }
+
+        int shard = ThreadLocalRandom.current().nextInt(shards);
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        for (Map.Entry<String, long[]> e : deltas.entrySet()) {
+            String[] key = e.getKey().split(":");
+            long present = e.getValue()[0];
+            long late = e.getValue()[1];
+            args.add(new Object[]{key[0], Long.parseLong(key[1]), shard, present, late, present, late});
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, args);
+    }
+
+    public Counts getCounts(AttendanceCounterScope scope, Long scopeId) {
+        return jdbcTemplate.queryForObject(SELECT_SQL, COUNTS_MAPPER,
+                scope.name(), scope == AttendanceCounterScope.GLOBAL ? 0L : scopeId);
+    }
+
+    /**
+     * Tính lại toàn bộ bộ đếm từ bảng attendance (backfill).
+     * Mỗi phạm vi (scope, scopeId) được tính lại trong một transaction ngắn riêng, chỉ khóa các shard của phạm vi đó,
+     * nên check-in của các buổi học khác không bị chặn trong lúc rebuild.
+     */
+    public void rebuild() {
+        rebuildScope(AttendanceCounterScope.GLOBAL, 0L);
+        rebuildScopes(AttendanceCounterScope.COURSE, COURSE_KEYS_SQL);
+        rebuildScopes(AttendanceCounterScope.SESSION, SESSION_KEYS_SQL);
+        rebuildScopes(AttendanceCounterScope.STUDENT, STUDENT_KEYS_SQL);
+    }
+
+    private void rebuildScopes(AttendanceCounterScope scope, String keysSql) {
+        for (Long scopeId : jdbcTemplate.queryForList(keysSql, Long.class)) {
+            rebuildScope(scope, scopeId);
+        }
+    }
+
+    private void rebuildScope(AttendanceCounterScope scope, Long scopeId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            // Khóa các shard trước rồi mới đếm: check-in nào đã cộng vào bộ đếm thì phải commit xong trước,
+            // check-in nào chưa cộng thì sẽ cộng sau khi giá trị đếm lại được ghi, nên không mất cũng không đếm trùng.
+            // (InnoDB chỉ tạo snapshot ở lần đọc không khóa đầu tiên, tức là sau khi đã lấy được khóa.)
+            jdbcTemplate.queryForList(LOCK_SQL, Integer.class, scope.name(), scopeId);
+            Counts counts = scope == AttendanceCounterScope.GLOBAL
+                    ? jdbcTemplate.queryForObject(countSql(scope), COUNTS_MAPPER)
+                    : jdbcTemplate.queryForObject(countSql(scope), COUNTS_MAPPER, scopeId);
+            jdbcTemplate.update(RESET_SQL, scope.name(), scopeId,
+                    counts.getPresent(), counts.getLate(), counts.getPresent(), counts.getLate());
+            jdbcTemplate.update(CLEAR_SHARDS_SQL, scope.name(), scopeId);
+        });
+    }
+
+    private static String countSql(AttendanceCounterScope scope) {
+        switch (scope) {
+            case COURSE:
+                return COURSE_COUNT_SQL;
+            case SESSION:
+                return SESSION_COUNT_SQL;
+            case STUDENT:
+                return STUDENT_COUNT_SQL;
+            default:
+                return GLOBAL_COUNT_SQL;
+        }
+    }
+
+    private static long scopeId(AttendanceCounterScope scope, CheckIn c) {
+        switch (scope) {
+            case COURSE:
+                return c.getCourseId();
+            case SESSION:
+                return c.getSessionId();
+            case STUDENT:
+                return c.getStudentId();
+            default:
+                return 0L;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class CheckIn {
+        private final Long courseId;
+        private final Long sessionId;
+        private final Long studentId;
+        private final AttendanceStatus status;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Counts {
+        private final long present;
+        private final long late;
+    }
+}
@@ -0,0 +1,243 @@
+package com.course.modules.attendance.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Xuất điểm danh của một khóa học / khoảng ngày ra CSV hoặc NDJSON.
+ * Các dòng được đọc từ ResultSet forward-only (MySQL streaming khi fetch-size = Integer.MIN_VALUE)
+ * và ghi thẳng ra response, nên bộ nhớ chỉ giữ một dòng và bộ đệm ghi, bất kể số dòng xuất.
+ */
+@Service
+public class AttendanceExportService {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    private static final String SELECT_SQL =
+            "SELECT a.id, c.id, c.code, c.title, s.id, s.session_date, st.id, st.student_number, st.full_name, "
+                    + "a.status, a.checked_at "
+                    + "FROM attendance a "
+                    + "JOIN session s ON s.id = a.session_id "
+                    + "JOIN course c ON c.id = s.course_id "
+                    + "JOIN student st ON st.id = a.student_id "
+                    + "WHERE 1 = 1";
+
+    private static final String CSV_HEADER =
+            "attendance_id,course_id,course_code,course_title,session_id,session_date,student_id,student_number,student_name,status,checked_at";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonFactory jsonFactory;
+    private final int fetchSize;
+
+    public AttendanceExportService(JdbcTemplate jdbcTemplate,
+                                   ObjectMapper objectMapper,
+                                   @Value("${attendance.export.fetch-size:-2147483648}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jsonFactory = objectMapper.getFactory();
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Ghi toàn bộ kết quả ra out. Cần ít nhất courseId hoặc một mốc ngày để tránh xuất cả bảng do nhầm lẫn.
+     */
+    public void export(Long courseId, LocalDate from, LocalDate to, Format format, OutputStream out) throws IOException {
+        if (courseId == null && from == null && to == null) {
+            throw new IllegalArgumentException("courseId or a date range is required");
+        }
+
+        StringBuilder sql = new StringBuilder(SELECT_SQL);
+        List<Object> params = new ArrayList<>(3);
+        if (courseId != null) {
+            sql.append(" AND s.course_id = ?");
+            params.add(courseId);
+        }
+        if (from != null) {
+            sql.append(" AND s.session_date >= ?");
+            params.add(Timestamp.valueOf(from.atStartOfDay()));
+        }
+        if (to != null) {
+            sql.append(" AND s.session_date < ?");
+            params.add(Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+        }
+        sql.append(" ORDER BY s.session_date, s.id, a.id");
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        RowWriter rowWriter = format == Format.NDJSON ? new NdjsonRowWriter(writer) : new CsvRowWriter(writer);
+        rowWriter.start();
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            return ps;
+        }, rs -> {
+            try {
+                rowWriter.write(rs);
+            } catch (IOException e) {
+                // Client ngắt kết nối: dừng đọc, JdbcTemplate sẽ đóng ResultSet
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        rowWriter.finish();
+        writer.flush();
+    }
+
+    private interface RowWriter {
+        void start() throws IOException;
+
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void start() throws IOException {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            writer.write(Long.toString(rs.getLong(1)));
+            writer.write(',');
+            writer.write(Long.toString(rs.getLong(2)));
+            writer.write(',');
+            writeField(rs.getString(3));
+            writer.write(',');
+            writeField(rs.getString(4));
+            writer.write(',');
+            writer.write(Long.toString(rs.getLong(5)));
+            writer.write(',');
+            writeTimestamp(rs.getTimestamp(6));
+            writer.write(',');
+            writer.write(Long.toString(rs.getLong(7)));
+            writer.write(',');
+            writeField(rs.getString(8));
+            writer.write(',');
+            writeField(rs.getString(9));
+            writer.write(',');
+            writeField(rs.getString(10));
+            writer.write(',');
+            writeTimestamp(rs.getTimestamp(11));
+            writer.write('\n');
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        private void writeTimestamp(Timestamp value) throws IOException {
+            if (value != null) {
+                writer.write(value.toLocalDateTime().toString());
+            }
+        }
+
+        // RFC 4180: bọc trong dấu nháy kép khi có dấu phẩy, nháy kép hoặc xuống dòng.
+        // Ô bắt đầu bằng = + - @ (hoặc tab, CR) bị Excel/Sheets hiểu là công thức: thêm ' phía trước để hiển thị như văn bản
+        private void writeField(String value) throws IOException {
+            if (value == null) return;
+            if (!value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char ch = value.charAt(i);
+                quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                if (ch == '"') writer.write('"');
+                writer.write(ch);
+            }
+            writer.write('"');
+        }
+    }
+
+    private class NdjsonRowWriter implements RowWriter {
+        private final Writer writer;
+        private JsonGenerator generator;
+
+        NdjsonRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void start() throws IOException {
+            generator = jsonFactory.createGenerator(writer);
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("attendanceId", rs.getLong(1));
+            generator.writeNumberField("courseId", rs.getLong(2));
+            generator.writeStringField("courseCode", rs.getString(3));
+            generator.writeStringField("courseTitle", rs.getString(4));
+            generator.writeNumberField("sessionId", rs.getLong(5));
+            writeTimestampField("sessionDate", rs.getTimestamp(6));
+            generator.writeNumberField("studentId", rs.getLong(7));
+            generator.writeStringField("studentNumber", rs.getString(8));
+            generator.writeStringField("studentName", rs.getString(9));
+            generator.writeStringField("status", rs.getString(10));
+            writeTimestampField("checkedAt", rs.getTimestamp(11));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+
+        private void writeTimestampField(String name, Timestamp value) throws IOException {
+            if (value == null) {
+                generator.writeNullField(name);
+            } else {
+                generator.writeStringField(name, value.toLocalDateTime().toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.course.modules.attendance.service;
+
+import com.course.core.exception.ServiceUnavailableException;
+import com.course.modules.attendance.dto.LiveAttendanceEventDto;
+import com.course.modules.attendance.event.AttendanceCheckedInEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hub phát check-in mới của từng buổi học tới các dashboard qua Server-Sent Events.
+ * Được cấp dữ liệu từ AttendanceCheckedInEvent sau khi commit, không truy vấn DB: mỗi sự kiện được
+ * serialize JSON một lần trên luồng dispatcher rồi đưa vào hàng đợi riêng (có giới hạn) của từng subscriber.
+ * Mỗi subscriber được gửi trên một luồng sender riêng khi có dữ liệu, nên một kết nối chậm/treo chỉ chặn
+ * chính nó; hàng đợi của nó đầy thì bị ngắt kết nối, không làm chậm dashboard khác hay luồng check-in.
+ * Subscriber lỗi/ngắt kết nối bị loại bỏ; heartbeat định kỳ giữ kết nối qua proxy và phát hiện client đã mất.
+ */
+@Slf4j
+@Component
+public class AttendanceLiveFeed {
+
+    private final CheckedInRegistry checkedInRegistry;
+    private final ObjectMapper objectMapper;
+    private final long emitterTimeoutMs;
+    private final int maxSubscribers;
+    private final int subscriberQueueCapacity;
+
+    private final Map<Long, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ThreadPoolExecutor dispatcher;
+    // Tối đa một lượt gửi cho mỗi subscriber tại một thời điểm, nên số luồng không vượt quá số subscriber
+    private final ThreadPoolExecutor sender;
+    private final ScheduledExecutorService heartbeat;
+
+    public AttendanceLiveFeed(CheckedInRegistry checkedInRegistry,
+                              ObjectMapper objectMapper,
+                              @Value("${attendance.live-feed.timeout-ms:1800000}") long emitterTimeoutMs,
+                              @Value("${attendance.live-feed.max-subscribers:1000}") int maxSubscribers,
+                              @Value("${attendance.live-feed.heartbeat-seconds:20}") long heartbeatSeconds,
+                              @Value("${attendance.live-feed.queue-capacity:10000}") int queueCapacity,
+                              @Value("${attendance.live-feed.subscriber-queue-capacity:256}") int subscriberQueueCapacity) {
+        this.checkedInRegistry = checkedInRegistry;
+        this.objectMapper = objectMapper;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.maxSubscribers = maxSubscribers;
+        this.subscriberQueueCapacity = subscriberQueueCapacity;
+        this.dispatcher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "attendance-live-feed");
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger senderThreads = new AtomicInteger();
+        this.sender = new ThreadPoolExecutor(0, maxSubscribers, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "attendance-live-feed-sender-" + senderThreads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "attendance-live-feed-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat.scheduleWithFixedDelay(this::sendHeartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeat.shutdownNow();
+        dispatcher.shutdownNow();
+        sender.shutdownNow();
+        subscribers.values().forEach(list -> list.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    public SseEmitter subscribe(Long sessionId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new ServiceUnavailableException("Too many live feed subscribers, please retry later", 5);
+        }
+        SseEmitter emitter = newEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(sessionId, emitter);
+        subscribers.compute(sessionId, (id, list) -> {
+            List<Subscriber> target = list != null ? list : new CopyOnWriteArrayList<>();
+            target.add(subscriber);
+            return target;
+        });
+        Runnable remove = () -> unsubscribe(subscriber);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        // Gửi ngay số đã điểm danh để dashboard không phải gọi API danh sách
+        CheckedInRegistry.SessionRoster roster = checkedInRegistry.getRoster(sessionId);
+        LiveAttendanceEventDto snapshot = LiveAttendanceEventDto.builder()
+                .checkedInCount(roster.getCheckedInCount())
+                .lateCount(roster.getLateCount())
+                .build();
+        try {
+            emitter.send(SseEmitter.event().name("snapshot").data(objectMapper.writeValueAsString(snapshot)));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    // Tách riêng để test thay bằng emitter giả
+    SseEmitter newEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCheckedIn(AttendanceCheckedInEvent event) {
+        if (!subscribers.containsKey(event.getSessionId())) return; // Không ai theo dõi buổi này
+        try {
+            dispatcher.execute(() -> publish(event));
+        } catch (RejectedExecutionException e) {
+            log.warn("Live feed queue is full, dropping check-in event for session {}", event.getSessionId());
+        }
+    }
+
+    private void publish(AttendanceCheckedInEvent event) {
+        List<Subscriber> list = subscribers.get(event.getSessionId());
+        if (list == null || list.isEmpty()) return;
+
+        CheckedInRegistry.SessionRoster roster = checkedInRegistry.getRoster(event.getSessionId());
+        LiveAttendanceEventDto payload = LiveAttendanceEventDto.builder()
+                .attendanceId(event.getAttendanceId())
+                .studentId(event.getStudentId())
+                .studentNumber(event.getStudentNumber())
+                .studentName(event.getStudentName())
+                .status(event.getStatus())
+                .checkedAt(event.getCheckedAt())
+                .checkedInCount(roster.getCheckedInCount())
+                .lateCount(roster.getLateCount())
+                .build();
+
+        // Serialize một lần cho mọi subscriber
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            log.error("Cannot serialize live attendance event", e);
+            return;
+        }
+        SseEmitter.SseEventBuilder builder = SseEmitter.event().name("check-in").data(json);
+        if (event.getAttendanceId() != null) {
+            builder.id(event.getAttendanceId().toString());
+        }
+        // build() chỉ được gọi một lần (nó nối thêm dòng kết thúc vào builder)
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = builder.build();
+        for (Subscriber subscriber : list) {
+            subscriber.offer(frame);
+        }
+    }
+
+    private void sendHeartbeat() {
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = SseEmitter.event().comment("heartbeat").build();
+        subscribers.values().forEach(list -> list.forEach(subscriber -> subscriber.offer(frame)));
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.sessionId, (id, list) -> {
+            if (list.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    /**
+     * Một dashboard đang mở: hàng đợi frame riêng và tối đa một luồng sender đang gửi cho nó.
+     * complete() của emitter chờ lượt send đang chạy (cùng monitor), nên chỉ luồng sender được gọi complete().
+     */
+    private class Subscriber {
+        private final Long sessionId;
+        private final SseEmitter emitter;
+        private final Queue<Set<ResponseBodyEmitter.DataWithMediaType>> frames;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+        private boolean completed;
+
+        Subscriber(Long sessionId, SseEmitter emitter) {
+            this.sessionId = sessionId;
+            this.emitter = emitter;
+            this.frames = new ArrayBlockingQueue<>(subscriberQueueCapacity);
+        }
+
+        void offer(Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+            if (closed) return;
+            if (!frames.offer(frame)) {
+                log.warn("Live feed subscriber of session {} is not keeping up, disconnecting", sessionId);
+                close();
+            }
+            schedule();
+        }
+
+        private void close() {
+            closed = true;
+            frames.clear();
+            unsubscribe(this);
+        }
+
+        private void schedule() {
+            if (!draining.compareAndSet(false, true)) return; // Lượt gửi đang chạy sẽ lấy frame mới
+            try {
+                sender.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                close();
+            }
+        }
+
+        private void drain() {
+            try {
+                Set<ResponseBodyEmitter.DataWithMediaType> frame;
+                while (!closed && (frame = frames.poll()) != null) {
+                    try {
+                        emitter.send(frame);
+                    } catch (IOException | IllegalStateException e) {
+                        close();
+                    }
+                }
+                if (closed && !completed) {
+                    completed = true;
+                    emitter.complete();
+                }
+            } finally {
+                draining.set(false);
+            }
+            // Frame đến sau lần poll cuối nhưng trước khi nhả cờ draining: lượt offer đó đã bỏ qua schedule()
+            if (!closed && !frames.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
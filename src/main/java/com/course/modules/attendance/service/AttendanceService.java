@@ -1,74 +1,123 @@
 package com.course.modules.attendance.service;
 
-import com.course.core.auth.model.User;
-import com.course.core.auth.repository.UserRepository;
+import com.course.core.auth.security.AuthenticatedUser;
+import com.course.core.dto.CursorPage;
+import com.course.core.id.IdBlockAllocator;
 import com.course.modules.attendance.dto.AttendanceDto;
 import com.course.modules.attendance.dto.AttendanceStatisticsDto;
 import com.course.modules.attendance.dto.CheckInRequest;
+import com.course.modules.attendance.dto.CheckedInRegistryStatsDto;
 import com.course.modules.attendance.dto.QrVerificationResponse;
+import com.course.modules.attendance.event.AttendanceCheckedInEvent;
 import com.course.modules.attendance.model.Attendance;
+import com.course.modules.attendance.model.AttendanceCounterScope;
 import com.course.modules.attendance.model.AttendanceStatus;
 import com.course.modules.course.repository.CourseRepository;
 import com.course.modules.session.model.Session;
 import com.course.modules.student.model.Student;
 import com.course.modules.attendance.repository.AttendanceRepository;
 import com.course.modules.session.repository.SessionRepository;
+import com.course.modules.session.service.QrTokenCache;
+import com.course.modules.session.service.QrTokenCache.CachedSession;
+import com.course.modules.session.service.QrTokenSigner;
 import com.course.modules.student.repository.StudentRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 public class AttendanceService {
 
+    private static final String ALREADY_CHECKED_IN = "Student has already checked in to this session";
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final AttendanceRepository attendanceRepository;
     private final SessionRepository sessionRepository;
     private final StudentRepository studentRepository;
-    private final UserRepository userRepository;
     private final CourseRepository courseRepository;
+    private final QrTokenCache qrTokenCache;
+    private final AttendanceWriteBehindQueue writeBehindQueue;
+    private final CheckedInRegistry checkedInRegistry;
+    private final QrTokenSigner qrTokenSigner;
+    private final AttendanceCounterService attendanceCounterService;
+    private final AttendanceStatisticsEngine statisticsEngine;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IdBlockAllocator idBlockAllocator;
+    private final TransactionTemplate transactionTemplate;
 
     public AttendanceService(AttendanceRepository attendanceRepository,
                              SessionRepository sessionRepository,
                              StudentRepository studentRepository,
-                             UserRepository userRepository,
-                             CourseRepository courseRepository) {
+                             CourseRepository courseRepository,
+                             QrTokenCache qrTokenCache,
+                             AttendanceWriteBehindQueue writeBehindQueue,
+                             CheckedInRegistry checkedInRegistry,
+                             QrTokenSigner qrTokenSigner,
+                             AttendanceCounterService attendanceCounterService,
+                             AttendanceStatisticsEngine statisticsEngine,
+                             ApplicationEventPublisher eventPublisher,
+                             IdBlockAllocator idBlockAllocator,
+                             PlatformTransactionManager transactionManager) {
         this.attendanceRepository = attendanceRepository;
         this.sessionRepository = sessionRepository;
         this.studentRepository = studentRepository;
-        this.userRepository = userRepository;
         this.courseRepository = courseRepository;
+        this.qrTokenCache = qrTokenCache;
+        this.writeBehindQueue = writeBehindQueue;
+        this.checkedInRegistry = checkedInRegistry;
+        this.qrTokenSigner = qrTokenSigner;
+        this.attendanceCounterService = attendanceCounterService;
+        this.statisticsEngine = statisticsEngine;
+        this.eventPublisher = eventPublisher;
+        this.idBlockAllocator = idBlockAllocator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     // --- 1. API GHI NHẬN ĐIỂM DANH (CHECK-IN) ---
-    @Transactional
-    public AttendanceDto checkIn(CheckInRequest request, String username) {
-        // Validate User & Student
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    public AttendanceDto checkIn(CheckInRequest request, AuthenticatedUser user) {
+        if (writeBehindQueue.isEnabled()) {
+            // Xác thực trong transaction, xếp hàng sau khi transaction kết thúc: enqueue có thể chờ tới
+            // offer-timeout-ms khi hàng đợi đầy và không được giữ connection trong lúc chờ
+            ValidatedCheckIn checkIn = transactionTemplate.execute(tx -> validateCheckIn(request, user));
+            return enqueue(checkIn, request.getQrToken());
+        }
+        // Cấp id trước khi mở transaction để việc lấy khối id mới không cần thêm connection khi đang giữ một connection
+        Long attendanceId = idBlockAllocator.nextId(IdBlockAllocator.ATTENDANCE);
+        return transactionTemplate.execute(tx -> insert(validateCheckIn(request, user), request.getQrToken(), attendanceId));
+    }
+
+    private ValidatedCheckIn validateCheckIn(CheckInRequest request, AuthenticatedUser user) {
+        // Validate User & Student (role/studentId lấy từ JWT, không tra bảng users)
         if (user.getStudentId() == null) throw new RuntimeException("Only students can check in");
         Student student = studentRepository.findById(user.getStudentId())
                 .orElseThrow(() -> new RuntimeException("Student not found"));
 
-        // Validate Session & Token
-        Session session = sessionRepository.findById(request.getSessionId())
-                .orElseThrow(() -> new RuntimeException("Session not found"));
+        // Validate Session & Token (đọc từ cache khi token còn hạn)
+        CachedSession session = qrTokenCache.getOrLoad(request.getSessionId());
 
-        if (session.getQrToken() == null || !session.getQrToken().equals(request.getQrToken())) {
+        QrTokenSigner.Verification verification = checkQrToken(session, request.getQrToken());
+        if (verification == QrTokenSigner.Verification.INVALID) {
             throw new RuntimeException("Invalid QR token");
         }
-        if (session.getQrTokenExpiresAt() == null || session.getQrTokenExpiresAt().isBefore(LocalDateTime.now())) {
+        if (verification == QrTokenSigner.Verification.EXPIRED) {
             throw new RuntimeException("QR token has expired");
         }
 
-        // Kiểm tra trùng lặp
-        if (attendanceRepository.findBySessionIdAndStudentId(session.getId(), student.getId()).isPresent()) {
-            throw new RuntimeException("Student has already checked in to this session");
+        // Kiểm tra trùng bằng bitmap trong bộ nhớ (ràng buộc unique trong DB vẫn là chốt chặn cuối)
+        if (checkedInRegistry.isCheckedIn(session.getSessionId(), student.getId())) {
+            throw new RuntimeException(ALREADY_CHECKED_IN);
         }
 
         // --- LOGIC NGHIỆP VỤ NÂNG CAO ---
@@ -86,34 +135,99 @@ public class AttendanceService {
         if (minutesLate > 15) {
             status = AttendanceStatus.LATE;
         }
+        return new ValidatedCheckIn(session, student, status, now);
+    }
+
+    // Chế độ write-behind: xếp hàng và trả lời ngay, luồng nền sẽ INSERT theo batch (id chưa có)
+    private AttendanceDto enqueue(ValidatedCheckIn checkIn, String providedQrToken) {
+        CachedSession session = checkIn.session;
+        Student student = checkIn.student;
+        // Bitmap nạp từ DB không thấy các bản ghi còn trong hàng đợi nên kiểm tra thêm hàng đợi
+        if (writeBehindQueue.isPending(session.getSessionId(), student.getId())) {
+            throw new RuntimeException(ALREADY_CHECKED_IN);
+        }
+        writeBehindQueue.enqueue(AttendanceCheckedInEvent.builder()
+                .courseId(session.getCourseId())
+                .sessionId(session.getSessionId())
+                .studentId(student.getId())
+                .studentNumber(student.getStudentNumber())
+                .studentName(student.getFullName())
+                .status(checkIn.status)
+                .checkedAt(checkIn.checkedAt)
+                .build(), providedQrToken);
+        // Đánh dấu ngay để chặn check-in trùng trong lúc bản ghi còn nằm trong hàng đợi
+        checkedInRegistry.markCheckedIn(session.getSessionId(), student.getId(), checkIn.status);
+        return AttendanceDto.builder()
+                .sessionId(session.getSessionId())
+                .studentId(student.getId())
+                .studentNumber(student.getStudentNumber())
+                .studentName(student.getFullName())
+                .status(checkIn.status)
+                .checkedAt(checkIn.checkedAt)
+                .courseName(session.getCourseTitle())
+                .build();
+    }
 
-        // Lưu DB
+    private AttendanceDto insert(ValidatedCheckIn checkIn, String providedQrToken, Long attendanceId) {
+        CachedSession session = checkIn.session;
+        Student student = checkIn.student;
+        AttendanceStatus status = checkIn.status;
+        LocalDateTime now = checkIn.checkedAt;
+
+        // Lưu DB (dùng reference để không phải SELECT lại session).
+        // INSERT trực tiếp, ràng buộc unique (session_id, student_id) quyết định check-in trùng
         Attendance attendance = Attendance.builder()
-                .session(session)
+                .id(attendanceId)
+                .session(sessionRepository.getReferenceById(session.getSessionId()))
                 .student(student)
                 .status(status)
                 .checkedAt(now)
-                .providedQrToken(request.getQrToken())
+                .providedQrToken(providedQrToken)
                 .build();
+        try {
+            attendance = attendanceRepository.saveAndFlush(attendance);
+        } catch (DataIntegrityViolationException e) {
+            // Session và student đã được xác thực ở trên nên vi phạm ràng buộc ở đây là bản ghi trùng
+            throw new RuntimeException(ALREADY_CHECKED_IN);
+        }
+        // Cộng bộ đếm thống kê trong cùng transaction
+        attendanceCounterService.recordCheckIn(session.getCourseId(), session.getSessionId(), student.getId(), status);
+        // Bitmap đã điểm danh và bộ thống kê trong bộ nhớ được cập nhật sau khi transaction commit
+        eventPublisher.publishEvent(AttendanceCheckedInEvent.builder()
+                .attendanceId(attendance.getId())
+                .courseId(session.getCourseId())
+                .sessionId(session.getSessionId())
+                .studentId(student.getId())
+                .studentNumber(student.getStudentNumber())
+                .studentName(student.getFullName())
+                .status(status)
+                .checkedAt(now)
+                .build());
 
-        return toDto(attendanceRepository.save(attendance));
+        return AttendanceDto.builder()
+                .id(attendance.getId())
+                .sessionId(session.getSessionId())
+                .studentId(student.getId())
+                .studentNumber(student.getStudentNumber())
+                .studentName(student.getFullName())
+                .status(attendance.getStatus())
+                .checkedAt(attendance.getCheckedAt())
+                .courseName(session.getCourseTitle())
+                .build();
     }
 
     // --- 2. API QUÉT & XÁC THỰC QR (SCAN - KHÔNG LƯU DB) ---
-    public QrVerificationResponse verifyQrToken(Long sessionId, String qrToken, String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        Session session = sessionRepository.findById(sessionId)
-                .orElseThrow(() -> new RuntimeException("Session not found"));
+    public QrVerificationResponse verifyQrToken(Long sessionId, String qrToken, AuthenticatedUser user) {
+        CachedSession session = qrTokenCache.getOrLoad(sessionId);
 
         boolean isValid = true;
         String message = "Valid QR Token";
 
-        if (session.getQrToken() == null || !session.getQrToken().equals(qrToken)) {
+        QrTokenSigner.Verification verification = checkQrToken(session, qrToken);
+        if (verification == QrTokenSigner.Verification.INVALID) {
             isValid = false;
             message = "Invalid QR Token";
-        } else if (session.getQrTokenExpiresAt().isBefore(LocalDateTime.now())) {
+        } else if (verification == QrTokenSigner.Verification.EXPIRED) {
             isValid = false;
             message = "QR Token Expired";
         }
@@ -121,39 +235,54 @@ public class AttendanceService {
         // Kiểm tra xem đã điểm danh chưa để báo cho FE biết
         boolean alreadyCheckedIn = false;
         if (user.getStudentId() != null) {
-            alreadyCheckedIn = attendanceRepository.findBySessionIdAndStudentId(sessionId, user.getStudentId()).isPresent();
+            alreadyCheckedIn = checkedInRegistry.isCheckedIn(sessionId, user.getStudentId());
         }
 
         return QrVerificationResponse.builder()
                 .valid(isValid)
                 .message(message)
-                .sessionId(session.getId())
-                .courseCode(session.getCourse().getCode())
-                .courseTitle(session.getCourse().getTitle())
+                .sessionId(session.getSessionId())
+                .courseCode(session.getCourseCode())
+                .courseTitle(session.getCourseTitle())
                 .sessionDate(session.getSessionDate())
                 .expiresAt(session.getQrTokenExpiresAt())
                 .alreadyCheckedIn(alreadyCheckedIn)
                 .build();
     }
 
+    // Token ký HMAC được xác thực thuần CPU; token ngẫu nhiên so với giá trị lưu trong session (đã cache)
+    private QrTokenSigner.Verification checkQrToken(CachedSession session, String qrToken) {
+        if (qrTokenSigner.isEnabled()) {
+            return qrTokenSigner.verify(session.getSessionId(), qrToken);
+        }
+        if (session.getQrToken() == null || !session.getQrToken().equals(qrToken)) {
+            return QrTokenSigner.Verification.INVALID;
+        }
+        if (session.getQrTokenExpiresAt() == null || session.getQrTokenExpiresAt().isBefore(LocalDateTime.now())) {
+            return QrTokenSigner.Verification.EXPIRED;
+        }
+        return QrTokenSigner.Verification.VALID;
+    }
+
     // --- 3. CÁC API THỐNG KÊ (STATISTICS) ---
 
     // Thống kê tổng quan toàn hệ thống
     public AttendanceStatisticsDto getStatistics() {
-        List<Attendance> all = attendanceRepository.findAll();
-        return calculateStats(all, sessionRepository.count(), studentRepository.count());
+        AttendanceCounterService.Counts counts = getCounts(AttendanceCounterScope.GLOBAL, null);
+        return calculateStats(counts.getPresent(), counts.getLate(), sessionRepository.count(), studentRepository.count());
     }
 
     // Thống kê theo Buổi học (Ai vắng, ai đi trễ...)
     public AttendanceStatisticsDto.SessionStatistics getStatisticsBySession(Long sessionId) {
         Session session = sessionRepository.findById(sessionId)
                 .orElseThrow(() -> new RuntimeException("Session not found"));
-        List<Attendance> attendances = attendanceRepository.findBySessionId(sessionId);
+        // Số có mặt/đi trễ lấy từ bộ đếm trong bộ nhớ, không đọc lại bảng attendance
+        AttendanceCounterService.Counts counts = getCounts(AttendanceCounterScope.SESSION, sessionId);
 
         // Giả sử tổng sinh viên là tất cả sinh viên trong DB (hoặc lấy theo đăng ký khóa học nếu có bảng enrollment)
         long totalStudents = studentRepository.count();
 
-        AttendanceStatisticsDto stats = calculateStats(attendances, 1, totalStudents);
+        AttendanceStatisticsDto stats = calculateStats(counts.getPresent(), counts.getLate(), 1, totalStudents);
 
         return AttendanceStatisticsDto.SessionStatistics.builder()
                 .sessionId(session.getId())
@@ -166,14 +295,18 @@ public class AttendanceService {
                 .build();
     }
 
+    public CheckedInRegistryStatsDto getCheckedInRegistryStats() {
+        return checkedInRegistry.getStats();
+    }
+
     // Thống kê theo Sinh viên (Tỉ lệ đi học của 1 người)
     public AttendanceStatisticsDto.StudentStatistics getStatisticsByStudent(Long studentId) {
         Student student = studentRepository.findById(studentId)
                 .orElseThrow(() -> new RuntimeException("Student not found"));
-        List<Attendance> attendances = attendanceRepository.findByStudentId(studentId);
+        AttendanceCounterService.Counts counts = getCounts(AttendanceCounterScope.STUDENT, studentId);
         long totalSessions = sessionRepository.count(); // Tổng số buổi đã diễn ra
 
-        AttendanceStatisticsDto stats = calculateStats(attendances, totalSessions, 1);
+        AttendanceStatisticsDto stats = calculateStats(counts.getPresent(), counts.getLate(), totalSessions, 1);
 
         return AttendanceStatisticsDto.StudentStatistics.builder()
                 .studentId(student.getId())
@@ -189,20 +322,29 @@ public class AttendanceService {
 
     // Thống kê theo Khóa học
     public AttendanceStatisticsDto getStatisticsByCourse(Long courseId) {
-        List<Session> sessions = sessionRepository.findByCourseId(courseId);
-        List<Long> sessionIds = sessions.stream().map(Session::getId).collect(Collectors.toList());
-        // Cần thêm hàm findBySessionIdIn trong Repository nếu chưa có, tạm thời dùng findAll filter
-        List<Attendance> attendances = attendanceRepository.findAll().stream()
-                .filter(a -> sessionIds.contains(a.getSession().getId()))
-                .collect(Collectors.toList());
+        long totalSessions = sessionRepository.countByCourseId(courseId);
+        AttendanceCounterService.Counts counts = getCounts(AttendanceCounterScope.COURSE, courseId);
+        return calculateStats(counts.getPresent(), counts.getLate(), totalSessions, studentRepository.count());
+    }
 
-        return calculateStats(attendances, sessions.size(), studentRepository.count());
+    // Tính lại bảng attendance_counter từ dữ liệu gốc rồi nạp lại bộ thống kê trong bộ nhớ
+    public void rebuildCounters() {
+        attendanceCounterService.rebuild();
+        if (statisticsEngine.isReady()) {
+            statisticsEngine.reconcile();
+        }
+    }
+
+    // Đọc từ bộ đếm trong bộ nhớ khi đã nạp xong, nếu chưa thì đọc bảng attendance_counter
+    private AttendanceCounterService.Counts getCounts(AttendanceCounterScope scope, Long scopeId) {
+        if (statisticsEngine.isReady()) {
+            return statisticsEngine.getCounts(scope, scopeId);
+        }
+        return attendanceCounterService.getCounts(scope, scopeId);
     }
 
     // Hàm phụ trợ tính toán số liệu
-    private AttendanceStatisticsDto calculateStats(List<Attendance> attendances, long totalSessions, long totalStudents) {
-        long present = attendances.stream().filter(a -> a.getStatus() == AttendanceStatus.PRESENT).count();
-        long late = attendances.stream().filter(a -> a.getStatus() == AttendanceStatus.LATE).count();
+    private AttendanceStatisticsDto calculateStats(long present, long late, long totalSessions, long totalStudents) {
         long totalRecords = totalSessions * totalStudents; // Tổng số lượt điểm danh kỳ vọng
         long absent = (totalRecords > 0) ? totalRecords - (present + late) : 0; // Vắng = Tổng - Có mặt
 
@@ -224,25 +366,97 @@ public class AttendanceService {
                 .build();
     }
 
-    // --- CÁC HÀM GET LIST CŨ ---
+    // --- CÁC HÀM GET LIST ---
+    // Mỗi danh sách chỉ tốn 1 câu truy vấn (constructor projection), không N+1 qua student/session/course
     public List<AttendanceDto> getAttendanceBySession(Long sessionId) {
-        return attendanceRepository.findBySessionId(sessionId).stream().map(this::toDto).collect(Collectors.toList());
+        return attendanceRepository.findDtosBySessionId(sessionId);
     }
 
     public List<AttendanceDto> getAttendanceByStudent(Long studentId) {
-        return attendanceRepository.findByStudentId(studentId).stream().map(this::toDto).collect(Collectors.toList());
+        return attendanceRepository.findDtosByStudentId(studentId);
     }
 
-    private AttendanceDto toDto(Attendance a) {
-        return AttendanceDto.builder()
-                .id(a.getId())
-                .sessionId(a.getSession().getId())
-                .studentId(a.getStudent().getId())
-                .studentNumber(a.getStudent().getStudentNumber())
-                .studentName(a.getStudent().getFullName())
-                .status(a.getStatus())
-                .checkedAt(a.getCheckedAt())
-                .courseName(a.getSession().getCourse().getTitle())
+    // Phân trang keyset: chi phí trang sâu bằng trang đầu (seek theo index (…, checked_at, id))
+    public CursorPage<AttendanceDto> getAttendancePageBySession(Long sessionId, String cursor, int size) {
+        PageRequest limit = PageRequest.of(0, pageSize(size) + 1);
+        List<AttendanceDto> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = attendanceRepository.findDtoPageBySessionId(sessionId, limit);
+        } else {
+            Cursor c = decodeCursor(cursor);
+            rows = attendanceRepository.findDtoPageBySessionIdAfter(sessionId, c.checkedAt, c.id, limit);
+        }
+        return toPage(rows, pageSize(size));
+    }
+
+    public CursorPage<AttendanceDto> getAttendancePageByStudent(Long studentId, String cursor, int size) {
+        PageRequest limit = PageRequest.of(0, pageSize(size) + 1);
+        List<AttendanceDto> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = attendanceRepository.findDtoPageByStudentId(studentId, limit);
+        } else {
+            Cursor c = decodeCursor(cursor);
+            rows = attendanceRepository.findDtoPageByStudentIdBefore(studentId, c.checkedAt, c.id, limit);
+        }
+        return toPage(rows, pageSize(size));
+    }
+
+    private static int pageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    // Đọc dư 1 dòng để biết còn trang sau hay không mà không cần COUNT
+    private static CursorPage<AttendanceDto> toPage(List<AttendanceDto> rows, int size) {
+        boolean hasNext = rows.size() > size;
+        List<AttendanceDto> items = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            AttendanceDto last = items.get(items.size() - 1);
+            nextCursor = encodeCursor(last.getCheckedAt(), last.getId());
+        }
+        return CursorPage.<AttendanceDto>builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
                 .build();
     }
-}
\ No newline at end of file
+
+    private static String encodeCursor(LocalDateTime checkedAt, Long id) {
+        String raw = checkedAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            return new Cursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+
+    private static class ValidatedCheckIn {
+        private final CachedSession session;
+        private final Student student;
+        private final AttendanceStatus status;
+        private final LocalDateTime checkedAt;
+
+        ValidatedCheckIn(CachedSession session, Student student, AttendanceStatus status, LocalDateTime checkedAt) {
+            this.session = session;
+            this.student = student;
+            this.status = status;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    private static class Cursor {
+        private final LocalDateTime checkedAt;
+        private final Long id;
+
+        Cursor(LocalDateTime checkedAt, Long id) {
+            this.checkedAt = checkedAt;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.course.modules.attendance.service;
+
+import com.course.modules.attendance.event.AttendanceCheckedInEvent;
+import com.course.modules.attendance.model.AttendanceCounterScope;
+import com.course.modules.attendance.model.AttendanceStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bộ thống kê trong bộ nhớ: các LongAdder có mặt/đi trễ theo toàn hệ thống, khóa học, buổi học và sinh viên.
+ * Được cộng sau mỗi check-in đã commit (AttendanceCheckedInEvent), nạp từ bảng attendance_counter khi khởi động
+ * và đối soát lại định kỳ với DB (attendance.statistics.reconcile-interval-seconds) để sửa sai lệch
+ * (ví dụ check-in ghi bởi instance khác).
+ */
+@Slf4j
+@Component
+public class AttendanceStatisticsEngine {
+
+    private static final String LOAD_SQL =
+            "SELECT scope, scope_id, SUM(present_count), SUM(late_count) FROM attendance_counter GROUP BY scope, scope_id";
+
+    private static final String VISIBLE_IDS_SQL = "SELECT id FROM attendance WHERE id IN (";
+    private static final int VISIBLE_IDS_CHUNK = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTemplate;
+    private final boolean enabled;
+    private final long reconcileIntervalSeconds;
+
+    private volatile State state;
+    // Khác null trong lúc reconcile đang nạp từ DB: giữ lại các check-in đến trong lúc đó để cộng vào trạng thái mới
+    private volatile Queue<AttendanceCheckedInEvent> pending;
+    // Read lock khi cộng check-in, write lock khi thay trạng thái, để không check-in nào lọt giữa lúc cộng buffer và lúc thay
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private ScheduledExecutorService reconciler;
+
+    public AttendanceStatisticsEngine(JdbcTemplate jdbcTemplate,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${attendance.statistics.in-memory:true}") boolean enabled,
+                                      @Value("${attendance.statistics.reconcile-interval-seconds:300}") long reconcileIntervalSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Mọi câu đọc của một lần reconcile cùng một snapshot (InnoDB REPEATABLE READ: consistent read từ câu đầu tiên)
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setReadOnly(true);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.enabled = enabled;
+        this.reconcileIntervalSeconds = reconcileIntervalSeconds;
+    }
+
+    /**
+     * Sẵn sàng trả lời khi đã nạp xong dữ liệu từ DB; trước đó caller đọc bảng attendance_counter.
+     */
+    public boolean isReady() {
+        return state != null;
+    }
+
+    public AttendanceCounterService.Counts getCounts(AttendanceCounterScope scope, Long scopeId) {
+        Counter counter = state.get(scope, scopeId);
+        if (counter == null) {
+            return new AttendanceCounterService.Counts(0, 0);
+        }
+        return new AttendanceCounterService.Counts(counter.present.sum(), counter.late.sum());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCheckedIn(AttendanceCheckedInEvent event) {
+        swapLock.readLock().lock();
+        try {
+            Queue<AttendanceCheckedInEvent> buffer = pending;
+            if (buffer != null) {
+                buffer.add(event);
+            }
+            State current = state;
+            if (current != null) {
+                current.record(event);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) return;
+        reconcile();
+        reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "attendance-statistics-reconciler");
+            t.setDaemon(true);
+            return t;
+        });
+        reconciler.scheduleWithFixedDelay(this::reconcileSafely,
+                reconcileIntervalSeconds, reconcileIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+        }
+    }
+
+    /**
+     * Nạp lại toàn bộ số liệu từ DB rồi thay thế trạng thái hiện tại trong một bước.
+     * Check-in được báo sau khi commit, nên check-in báo trước khi bắt đầu nạp đã nằm trong kết quả đọc từ DB.
+     * Check-in báo trong lúc nạp được giữ lại trong buffer, nhưng có thể đã commit trước snapshot (chỉ listener
+     * AFTER_COMMIT chạy muộn): chỉ cộng vào trạng thái mới những check-in mà dòng attendance không thấy được
+     * trong cùng snapshot đó.
+     */
+    public synchronized void reconcile() {
+        Queue<AttendanceCheckedInEvent> buffer = new ConcurrentLinkedQueue<>();
+        pending = buffer;
+        try {
+            int[] applied = new int[1];
+            snapshotTemplate.executeWithoutResult(tx -> {
+                State fresh = new State();
+                jdbcTemplate.query(LOAD_SQL, rs -> {
+                    Counter counter = fresh.getOrCreate(AttendanceCounterScope.valueOf(rs.getString(1)), rs.getLong(2));
+                    counter.present.add(rs.getLong(3));
+                    counter.late.add(rs.getLong(4));
+                });
+                fresh.getOrCreate(AttendanceCounterScope.GLOBAL, 0L);
+
+                // Phần lớn buffer được đối chiếu ngoài khóa; dưới write lock chỉ còn các check-in đến sau đó
+                applied[0] = applyMissing(fresh, buffer);
+                swapLock.writeLock().lock();
+                try {
+                    applied[0] += applyMissing(fresh, buffer);
+                    state = fresh;
+                } finally {
+                    swapLock.writeLock().unlock();
+                }
+            });
+            log.debug("Attendance statistics reconciled with database ({} check-ins applied during load)", applied[0]);
+        } finally {
+            pending = null;
+        }
+    }
+
+    // Lấy hết buffer, cộng các check-in chưa có trong snapshot; trả về số check-in đã cộng
+    private int applyMissing(State fresh, Queue<AttendanceCheckedInEvent> buffer) {
+        List<AttendanceCheckedInEvent> events = new ArrayList<>();
+        AttendanceCheckedInEvent event;
+        while ((event = buffer.poll()) != null) {
+            events.add(event);
+        }
+        if (events.isEmpty()) return 0;
+
+        Set<Long> inSnapshot = visibleIds(events);
+        int applied = 0;
+        for (AttendanceCheckedInEvent e : events) {
+            if (e.getAttendanceId() == null || !inSnapshot.contains(e.getAttendanceId())) {
+                fresh.record(e);
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    private Set<Long> visibleIds(List<AttendanceCheckedInEvent> events) {
+        List<Long> ids = events.stream().map(AttendanceCheckedInEvent::getAttendanceId)
+                .filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) return Collections.emptySet();
+
+        Set<Long> visible = new HashSet<>();
+        for (int from = 0; from < ids.size(); from += VISIBLE_IDS_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(from + VISIBLE_IDS_CHUNK, ids.size()));
+            String sql = VISIBLE_IDS_SQL + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            visible.addAll(jdbcTemplate.queryForList(sql, Long.class, chunk.toArray()));
+        }
+        return visible;
+    }
+
+    private void reconcileSafely() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("Attendance statistics reconciliation failed", e);
+        }
+    }
+
+    private static class Counter {
+        private final LongAdder present = new LongAdder();
+        private final LongAdder late = new LongAdder();
+    }
+
+    private static class State {
+        private final Map<AttendanceCounterScope, Map<Long, Counter>> scopes = new ConcurrentHashMap<>();
+
+        State() {
+            for (AttendanceCounterScope scope : AttendanceCounterScope.values()) {
+                scopes.put(scope, new ConcurrentHashMap<>());
+            }
+        }
+
+        Counter get(AttendanceCounterScope scope, Long scopeId) {
+            return scopes.get(scope).get(scope == AttendanceCounterScope.GLOBAL ? 0L : scopeId);
+        }
+
+        Counter getOrCreate(AttendanceCounterScope scope, Long scopeId) {
+            return scopes.get(scope).computeIfAbsent(scopeId, id -> new Counter());
+        }
+
+        void record(AttendanceCheckedInEvent event) {
+            record(AttendanceCounterScope.GLOBAL, 0L, event.getStatus());
+            record(AttendanceCounterScope.COURSE, event.getCourseId(), event.getStatus());
+            record(AttendanceCounterScope.SESSION, event.getSessionId(), event.getStatus());
+            record(AttendanceCounterScope.STUDENT, event.getStudentId(), event.getStatus());
+        }
+
+        void record(AttendanceCounterScope scope, Long scopeId, AttendanceStatus status) {
+            Counter counter = getOrCreate(scope, scopeId);
+            if (status == AttendanceStatus.LATE) counter.late.increment();
+            else counter.present.increment();
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package com.course.modules.attendance.service;
+
+import com.course.core.exception.ServiceUnavailableException;
+import com.course.core.id.IdBlockAllocator;
+import com.course.modules.attendance.event.AttendanceCheckedInEvent;
+import com.course.modules.attendance.model.AttendanceStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chế độ ghi điểm danh "write-behind" (attendance.ingestion.mode=write-behind).
+ * Check-in đã xác thực được đưa vào hàng đợi có giới hạn và trả lời ngay cho sinh viên;
+ * một luồng nền gom các bản ghi và INSERT nhiều dòng bằng JDBC batch sau mỗi vài mili giây.
+ * Khi tắt ứng dụng, hàng đợi được ghi hết xuống DB trước khi DataSource đóng.
+ * Mỗi dòng ghi thành công phát AttendanceCheckedInEvent trong transaction của batch.
+ *
+ * Sinh viên đã được báo check-in thành công nên không dòng nào bị bỏ: dòng ghi lỗi được thử lại
+ * tối đa max-attempts lần; sau đó (hoặc khi tắt ứng dụng mà vẫn chưa ghi được) dòng được ghi vào file
+ * dead-letter (NDJSON) và nạp lại vào hàng đợi ở lần khởi động sau. Dòng bị đưa vào dead-letter trong lúc
+ * chạy được bỏ khỏi bitmap đã điểm danh để sinh viên có thể check-in lại.
+ */
+@Slf4j
+@Component
+public class AttendanceWriteBehindQueue {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO attendance (id, session_id, student_id, status, checked_at, provided_qr_token) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String SESSION_STUDENT_CONSTRAINT = "uq_attendance_session_student";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AttendanceCounterService attendanceCounterService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IdBlockAllocator idBlockAllocator;
+    private final CheckedInRegistry checkedInRegistry;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+    private final int maxAttempts;
+    private final long retryIntervalMs;
+    private final int maxRetries;
+    private final Path deadLetterFile;
+
+    private final BlockingQueue<PendingAttendance> queue;
+    // Dòng ghi lỗi chờ thử lại; chỉ luồng flush (hoặc shutdown, sau khi luồng flush dừng) truy cập
+    private final Deque<PendingAttendance> retries = new ArrayDeque<>();
+    // Các cặp (session, student) đã nhận nhưng chưa ghi xuống DB, dùng để chặn check-in trùng
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService flusher;
+
+    public AttendanceWriteBehindQueue(JdbcTemplate jdbcTemplate,
+                                      PlatformTransactionManager transactionManager,
+                                      AttendanceCounterService attendanceCounterService,
+                                      ApplicationEventPublisher eventPublisher,
+                                      IdBlockAllocator idBlockAllocator,
+                                      CheckedInRegistry checkedInRegistry,
+                                      ObjectMapper objectMapper,
+                                      @Value("${attendance.ingestion.mode:direct}") String mode,
+                                      @Value("${attendance.ingestion.queue-capacity:10000}") int queueCapacity,
+                                      @Value("${attendance.ingestion.batch-size:500}") int batchSize,
+                                      @Value("${attendance.ingestion.flush-interval-ms:5}") long flushIntervalMs,
+                                      @Value("${attendance.ingestion.offer-timeout-ms:50}") long offerTimeoutMs,
+                                      @Value("${attendance.ingestion.max-attempts:10}") int maxAttempts,
+                                      @Value("${attendance.ingestion.retry-interval-ms:1000}") long retryIntervalMs,
+                                      @Value("${attendance.ingestion.dead-letter-file:attendance-dead-letter.ndjson}") String deadLetterFile) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.attendanceCounterService = attendanceCounterService;
+        this.eventPublisher = eventPublisher;
+        this.idBlockAllocator = idBlockAllocator;
+        this.checkedInRegistry = checkedInRegistry;
+        this.objectMapper = objectMapper;
+        this.enabled = "write-behind".equalsIgnoreCase(mode);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.maxAttempts = maxAttempts;
+        this.retryIntervalMs = retryIntervalMs;
+        this.maxRetries = queueCapacity;
+        this.deadLetterFile = Path.of(deadLetterFile);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) return;
+        replayDeadLetters();
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "attendance-write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Attendance write-behind ingestion enabled (batch size {}, flush every {} ms)", batchSize, flushIntervalMs);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (!enabled) return;
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        synchronized (this) {
+            // Ghi nốt những gì còn lại trong hàng đợi; dừng ở batch đầu tiên không cấp được id
+            List<PendingAttendance> batch;
+            while (!(batch = drain()).isEmpty() && write(batch)) {
+                // tiếp tục cho đến khi hết hàng đợi
+            }
+            // Không chờ thử lại lúc tắt: những dòng chưa ghi được lưu ra file để lần khởi động sau ghi tiếp
+            List<PendingAttendance> left = new ArrayList<>(retries);
+            retries.clear();
+            queue.drainTo(left);
+            if (left.isEmpty()) {
+                log.info("Attendance write-behind queue drained");
+            } else {
+                log.warn("Attendance write-behind queue stopped with {} rows not written, saving them to {}",
+                        left.size(), deadLetterFile.toAbsolutePath());
+                deadLetter(left, "Not written before shutdown");
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isPending(Long sessionId, Long studentId) {
+        return pendingKeys.contains(key(sessionId, studentId));
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Đưa check-in đã xác thực vào hàng đợi. Khi hàng đợi đầy quá offer-timeout-ms thì từ chối (backpressure).
+     * Phải gọi ngoài transaction: trong lúc chờ hàng đợi, caller không được giữ connection của pool.
+     */
+    public void enqueue(AttendanceCheckedInEvent checkIn, String providedQrToken) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("enqueue must be called outside a transaction");
+        }
+        String key = key(checkIn.getSessionId(), checkIn.getStudentId());
+        if (!pendingKeys.add(key)) {
+            throw new RuntimeException("Student has already checked in to this session");
+        }
+        boolean accepted;
+        try {
+            accepted = queue.offer(new PendingAttendance(checkIn, providedQrToken),
+                    offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            pendingKeys.remove(key);
+            throw new ServiceUnavailableException("Check-in service is busy, please retry", 1);
+        }
+    }
+
+    private synchronized void flushSafely() {
+        try {
+            List<PendingAttendance> due = dueRetries();
+            if (!due.isEmpty() && !write(due)) return;
+            // Khi nhiều dòng đang chờ thử lại (DB có sự cố) thì ngừng lấy thêm: hàng đợi đầy sẽ báo 503 cho client
+            List<PendingAttendance> batch;
+            while (retries.size() < maxRetries && !(batch = drain()).isEmpty() && write(batch)) {
+                // write() trả về false khi không cấp được id: để lần chạy sau thử lại
+            }
+        } catch (Exception e) {
+            // Không để exception làm dừng scheduler
+            log.error("Attendance write-behind flush failed", e);
+        }
+    }
+
+    private List<PendingAttendance> drain() {
+        List<PendingAttendance> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+        queue.drainTo(batch, batchSize);
+        return batch;
+    }
+
+    // Các dòng đã hết thời gian chờ thử lại (tối đa batchSize dòng)
+    private List<PendingAttendance> dueRetries() {
+        long now = System.currentTimeMillis();
+        List<PendingAttendance> due = new ArrayList<>();
+        int size = retries.size();
+        for (int i = 0; i < size && due.size() < batchSize; i++) {
+            PendingAttendance p = retries.poll();
+            if (p.nextAttemptAt <= now) {
+                due.add(p);
+            } else {
+                retries.add(p);
+            }
+        }
+        return due;
+    }
+
+    // Trả về false nếu không cấp được id cho batch (cả batch được đưa vào hàng chờ thử lại)
+    private boolean write(List<PendingAttendance> batch) {
+        try {
+            // Id lấy theo khối từ id_sequence (dùng chung với nextId của các entity), không dùng auto_increment.
+            // Dòng thử lại giữ id đã cấp ở lần trước
+            List<PendingAttendance> withoutId = batch.stream().filter(p -> p.getId() == null).toList();
+            if (!withoutId.isEmpty()) {
+                long firstId = idBlockAllocator.allocate(IdBlockAllocator.ATTENDANCE, withoutId.size());
+                for (int i = 0; i < withoutId.size(); i++) {
+                    withoutId.get(i).assignId(firstId + i);
+                }
+            }
+        } catch (DataAccessException | TransactionException e) {
+            log.error("Cannot allocate ids for {} attendance rows, retrying later: {}", batch.size(), e.getMessage());
+            batch.forEach(p -> retryLater(p, e));
+            return false;
+        }
+
+        try {
+            // INSERT cả batch và cộng bộ đếm thống kê trong cùng một transaction
+            transactionTemplate.executeWithoutResult(tx -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, p) -> {
+                    ps.setLong(1, p.getId());
+                    ps.setLong(2, p.getSessionId());
+                    ps.setLong(3, p.getStudentId());
+                    ps.setString(4, p.getStatus().name());
+                    ps.setTimestamp(5, Timestamp.valueOf(p.getCheckedAt()));
+                    ps.setString(6, p.getProvidedQrToken());
+                });
+                attendanceCounterService.recordCheckIns(batch.stream().map(PendingAttendance::toCheckIn).toList());
+                batch.forEach(p -> eventPublisher.publishEvent(p.getEvent()));
+            });
+            batch.forEach(this::written);
+        } catch (DataAccessException | TransactionException e) {
+            // Một dòng lỗi không được làm mất cả batch: ghi lại từng dòng
+            log.warn("Batch insert of {} attendance rows failed, retrying row by row: {}", batch.size(), e.getMessage());
+            for (PendingAttendance p : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(tx -> {
+                        jdbcTemplate.update(INSERT_SQL, p.getId(), p.getSessionId(), p.getStudentId(), p.getStatus().name(),
+                                Timestamp.valueOf(p.getCheckedAt()), p.getProvidedQrToken());
+                        attendanceCounterService.recordCheckIns(List.of(p.toCheckIn()));
+                        eventPublisher.publishEvent(p.getEvent());
+                    });
+                    written(p);
+                } catch (DuplicateKeyException duplicate) {
+                    if (violates(duplicate, SESSION_STUDENT_CONSTRAINT)) {
+                        // Ràng buộc unique (session_id, student_id): bản ghi đã tồn tại
+                        log.debug("Attendance for session {} student {} already recorded", p.getSessionId(), p.getStudentId());
+                        written(p);
+                    } else {
+                        // Trùng khóa chính: id đã cấp bị dòng khác chiếm (id_sequence lệch so với dữ liệu); lần sau cấp id mới
+                        log.error("Attendance id {} for session {} student {} is already taken, retrying with a new id: {}",
+                                p.getId(), p.getSessionId(), p.getStudentId(), duplicate.getMostSpecificCause().getMessage());
+                        p.clearId();
+                        retryLater(p, duplicate);
+                    }
+                } catch (DataAccessException | TransactionException rowError) {
+                    retryLater(p, rowError);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean violates(DuplicateKeyException e, String constraint) {
+        String message = e.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase(Locale.ROOT).contains(constraint);
+    }
+
+    private void written(PendingAttendance p) {
+        pendingKeys.remove(key(p.getSessionId(), p.getStudentId()));
+    }
+
+    // Đưa dòng vào hàng chờ thử lại (không bao giờ bỏ); quá max-attempts lần thì chuyển sang dead-letter
+    private void retryLater(PendingAttendance p, Exception error) {
+        p.attempts++;
+        if (p.attempts < maxAttempts) {
+            p.nextAttemptAt = System.currentTimeMillis() + retryIntervalMs * p.attempts;
+            retries.add(p);
+            return;
+        }
+        log.error("Giving up on attendance for session {} student {} after {} attempts: {}",
+                p.getSessionId(), p.getStudentId(), p.attempts, error.getMessage());
+        deadLetter(List.of(p), error.getMessage());
+        written(p);
+        checkedInRegistry.unmark(p.getSessionId(), p.getStudentId());
+    }
+
+    // Ghi thêm vào file dead-letter; nếu không ghi được file thì log đủ dữ liệu để khôi phục bằng tay
+    private void deadLetter(List<PendingAttendance> rows, String reason) {
+        LocalDateTime now = LocalDateTime.now();
+        try (BufferedWriter writer = Files.newBufferedWriter(deadLetterFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (PendingAttendance p : rows) {
+                writer.write(objectMapper.writeValueAsString(DeadLetter.of(p, reason, now)));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            log.error("Cannot write {} attendance rows to {}: {}", rows.size(), deadLetterFile.toAbsolutePath(), e.getMessage());
+            for (PendingAttendance p : rows) {
+                log.error("Lost attendance: session {} student {} status {} checked at {}",
+                        p.getSessionId(), p.getStudentId(), p.getStatus(), p.getCheckedAt());
+            }
+        }
+    }
+
+    // Nạp lại các dòng chưa ghi được từ lần chạy trước; dòng đã có trong DB sẽ bị bỏ qua nhờ ràng buộc unique
+    private void replayDeadLetters() {
+        if (!Files.exists(deadLetterFile)) return;
+        try {
+            List<String> lines = Files.readAllLines(deadLetterFile, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                if (line.isBlank()) continue;
+                PendingAttendance p = objectMapper.readValue(line, DeadLetter.class).toPending();
+                pendingKeys.add(key(p.getSessionId(), p.getStudentId()));
+                retries.add(p);
+            }
+            Files.delete(deadLetterFile);
+            log.info("Replaying {} attendance rows from {}", retries.size(), deadLetterFile.toAbsolutePath());
+        } catch (IOException e) {
+            log.error("Cannot replay attendance dead-letter file {}: {}", deadLetterFile.toAbsolutePath(), e.getMessage());
+        }
+    }
+
+    private static String key(Long sessionId, Long studentId) {
+        return sessionId + ":" + studentId;
+    }
+
+    static class PendingAttendance {
+        private AttendanceCheckedInEvent event;
+        private final String providedQrToken;
+        private int attempts;
+        private long nextAttemptAt;
+
+        PendingAttendance(AttendanceCheckedInEvent event, String providedQrToken) {
+            this.event = event;
+            this.providedQrToken = providedQrToken;
+        }
+
+        void assignId(long id) {
+            event = event.toBuilder().attendanceId(id).build();
+        }
+
+        void clearId() {
+            event = event.toBuilder().attendanceId(null).build();
+        }
+
+        AttendanceCheckedInEvent getEvent() {
+            return event;
+        }
+
+        String getProvidedQrToken() {
+            return providedQrToken;
+        }
+
+        Long getId() {
+            return event.getAttendanceId();
+        }
+
+        Long getSessionId() {
+            return event.getSessionId();
+        }
+
+        Long getStudentId() {
+            return event.getStudentId();
+        }
+
+        AttendanceStatus getStatus() {
+            return event.getStatus();
+        }
+
+        LocalDateTime getCheckedAt() {
+            return event.getCheckedAt();
+        }
+
+        AttendanceCounterService.CheckIn toCheckIn() {
+            return new AttendanceCounterService.CheckIn(event.getCourseId(), event.getSessionId(),
+                    event.getStudentId(), event.getStatus());
+        }
+    }
+
+    /**
+     * Một dòng trong file dead-letter (NDJSON).
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class DeadLetter {
+        private Long courseId;
+        private Long sessionId;
+        private Long studentId;
+        private String studentNumber;
+        private String studentName;
+        private AttendanceStatus status;
+        private LocalDateTime checkedAt;
+        private String providedQrToken;
+        private String error;
+        private LocalDateTime failedAt;
+
+        static DeadLetter of(PendingAttendance p, String error, LocalDateTime failedAt) {
+            AttendanceCheckedInEvent e = p.getEvent();
+            return DeadLetter.builder()
+                    .courseId(e.getCourseId())
+                    .sessionId(e.getSessionId())
+                    .studentId(e.getStudentId())
+                    .studentNumber(e.getStudentNumber())
+                    .studentName(e.getStudentName())
+                    .status(e.getStatus())
+                    .checkedAt(e.getCheckedAt())
+                    .providedQrToken(p.getProvidedQrToken())
+                    .error(error)
+                    .failedAt(failedAt)
+                    .build();
+        }
+
+        PendingAttendance toPending() {
+            return new PendingAttendance(AttendanceCheckedInEvent.builder()
+                    .courseId(courseId)
+                    .sessionId(sessionId)
+                    .studentId(studentId)
+                    .studentNumber(studentNumber)
+                    .studentName(studentName)
+                    .status(status)
+                    .checkedAt(checkedAt)
+                    .build(), providedQrToken);
+        }
+    }
+}
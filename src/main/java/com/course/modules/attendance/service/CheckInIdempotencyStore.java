@@ -0,0 +1,163 @@
+package com.course.modules.attendance.service;
+
+import com.course.modules.attendance.dto.AttendanceDto;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Lưu kết quả check-in theo header Idempotency-Key (kèm id người dùng) để request gửi lại trả về đúng
+ * AttendanceDto của lần đầu mà không chạy lại validate hay truy vấn DB.
+ * Request trùng key đến khi lần đầu còn đang chạy sẽ chờ cùng một CompletableFuture.
+ * Chỉ giữ kết quả thành công, trong ttl-seconds giây và tối đa max-entries key; khi đầy thì bỏ qua idempotency
+ * (request vẫn được xử lý bình thường).
+ */
+@Slf4j
+@Component
+public class CheckInIdempotencyStore {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final long ttlNanos;
+    private final long waitTimeoutMs;
+    private final int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService cleaner;
+
+    public CheckInIdempotencyStore(@Value("${attendance.idempotency.ttl-seconds:600}") long ttlSeconds,
+                                   @Value("${attendance.idempotency.max-entries:100000}") int maxEntries,
+                                   @Value("${attendance.idempotency.wait-timeout-ms:10000}") long waitTimeoutMs) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxEntries = maxEntries;
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "check-in-idempotency-cleaner");
+            t.setDaemon(true);
+            return t;
+        });
+        long sweepSeconds = Math.max(1, ttlSeconds / 2);
+        cleaner.scheduleWithFixedDelay(this::evictExpired, sweepSeconds, sweepSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        cleaner.shutdownNow();
+    }
+
+    /**
+     * Giữ chỗ cho key. Nếu key đã có (đang chạy hoặc đã xong) thì trả về Claim để chờ kết quả cũ,
+     * ngược lại caller là chủ sở hữu và phải gọi complete / fail khi xử lý xong.
+     */
+    public Claim claim(Long userId, String idempotencyKey, Long sessionId) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new RuntimeException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String key = userId + ":" + idempotencyKey;
+        long now = System.nanoTime();
+
+        Entry existing = entries.get(key);
+        if (existing != null && existing.isExpired(now)) {
+            entries.remove(key, existing);
+            existing = null;
+        }
+        if (existing == null) {
+            if (entries.size() >= maxEntries) {
+                evictExpired();
+                if (entries.size() >= maxEntries) {
+                    log.warn("Idempotency store is full ({} keys), processing check-in without it", maxEntries);
+                    return new Claim(null, null, true);
+                }
+            }
+            Entry created = new Entry(sessionId, now + ttlNanos);
+            existing = entries.putIfAbsent(key, created);
+            if (existing == null) {
+                return new Claim(key, created, true);
+            }
+        }
+
+        if (!existing.sessionId.equals(sessionId)) {
+            throw new RuntimeException("Idempotency-Key was already used for a different session");
+        }
+        return new Claim(key, existing, false);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void evictExpired() {
+        long now = System.nanoTime();
+        entries.entrySet().removeIf(e -> e.getValue().isExpired(now));
+    }
+
+    private static class Entry {
+        private final Long sessionId;
+        private final CompletableFuture<AttendanceDto> result = new CompletableFuture<>();
+        private volatile long expiresAt;
+
+        Entry(Long sessionId, long expiresAt) {
+            this.sessionId = sessionId;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt > 0;
+        }
+    }
+
+    public class Claim {
+        private final String key;
+        private final Entry entry;
+        private final boolean owner;
+
+        private Claim(String key, Entry entry, boolean owner) {
+            this.key = key;
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        /**
+         * true: caller phải tự xử lý check-in; false: đây là request gửi lại, lấy kết quả bằng await().
+         */
+        public boolean isOwner() {
+            return owner;
+        }
+
+        public void complete(AttendanceDto attendance) {
+            if (entry == null) return;
+            entry.expiresAt = System.nanoTime() + ttlNanos;
+            entry.result.complete(attendance);
+        }
+
+        // Lỗi không được lưu: lần gửi lại sau đó sẽ được xử lý lại từ đầu
+        public void fail(RuntimeException error) {
+            if (entry == null) return;
+            entries.remove(key, entry);
+            entry.result.completeExceptionally(error);
+        }
+
+        public AttendanceDto await() {
+            try {
+                return entry.result.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+            } catch (TimeoutException e) {
+                throw new RuntimeException("A check-in with this Idempotency-Key is still in progress");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for check-in result");
+            }
+        }
+    }
+}
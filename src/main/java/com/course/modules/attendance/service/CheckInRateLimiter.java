@@ -0,0 +1,190 @@
+package com.course.modules.attendance.service;
+
+import com.course.modules.attendance.dto.RateLimiterStatsDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Giới hạn tần suất scan/check-in bằng token bucket trong bộ nhớ, theo từng người dùng và từng buổi học.
+ * Bucket được chia vào các stripe (mỗi stripe một HashMap và một khóa riêng) để các request khác key
+ * hầu như không tranh chấp nhau. Request bị từ chối trả về số giây nên chờ, không ném exception.
+ */
+@Component
+public class CheckInRateLimiter {
+
+    private final boolean enabled;
+    private final BucketTable users;
+    private final BucketTable sessions;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejectedByUser = new LongAdder();
+    private final LongAdder rejectedBySession = new LongAdder();
+
+    public CheckInRateLimiter(@Value("${attendance.rate-limit.enabled:true}") boolean enabled,
+                              @Value("${attendance.rate-limit.student.capacity:10}") int userCapacity,
+                              @Value("${attendance.rate-limit.student.refill-per-second:1}") double userRefillPerSecond,
+                              @Value("${attendance.rate-limit.session.capacity:1000}") int sessionCapacity,
+                              @Value("${attendance.rate-limit.session.refill-per-second:300}") double sessionRefillPerSecond,
+                              @Value("${attendance.rate-limit.stripes:64}") int stripes,
+                              @Value("${attendance.rate-limit.max-keys:100000}") int maxKeys) {
+        this.enabled = enabled;
+        int keysPerStripe = Math.max(1, maxKeys / stripes);
+        this.users = new BucketTable(userCapacity, userRefillPerSecond, stripes, keysPerStripe, this::nanoTime);
+        this.sessions = new BucketTable(sessionCapacity, sessionRefillPerSecond, stripes, keysPerStripe, this::nanoTime);
+    }
+
+    /**
+     * Lấy 1 token của người dùng và 1 token của buổi học.
+     *
+     * @return 0 nếu được phép, ngược lại là số giây (>= 1) nên chờ trước khi thử lại (header Retry-After)
+     */
+    public long tryAcquire(Long userId, Long sessionId) {
+        if (!enabled) return 0;
+
+        long waitNanos = users.tryAcquire(userId);
+        if (waitNanos > 0) {
+            rejectedByUser.increment();
+            return toRetryAfterSeconds(waitNanos);
+        }
+        if (sessionId != null) {
+            waitNanos = sessions.tryAcquire(sessionId);
+            if (waitNanos > 0) {
+                // Buổi học đang quá tải: trả lại token của người dùng vì request không được xử lý
+                users.refund(userId);
+                rejectedBySession.increment();
+                return toRetryAfterSeconds(waitNanos);
+            }
+        }
+        allowed.increment();
+        return 0;
+    }
+
+    public RateLimiterStatsDto getStats() {
+        return RateLimiterStatsDto.builder()
+                .enabled(enabled)
+                .allowed(allowed.sum())
+                .rejectedByStudent(rejectedByUser.sum())
+                .rejectedBySession(rejectedBySession.sum())
+                .trackedStudents(users.size())
+                .trackedSessions(sessions.size())
+                .build();
+    }
+
+    // Tách riêng để test điều khiển được thời gian
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static class Bucket {
+        private double tokens;
+        private long refilledAt;
+
+        Bucket(double tokens, long refilledAt) {
+            this.tokens = tokens;
+            this.refilledAt = refilledAt;
+        }
+    }
+
+    private static class BucketTable {
+        private final double capacity;
+        private final double tokensPerNano;
+        private final int keysPerStripe;
+        private final Stripe[] stripes;
+        private final LongSupplier clock;
+
+        BucketTable(int capacity, double refillPerSecond, int stripeCount, int keysPerStripe, LongSupplier clock) {
+            this.capacity = capacity;
+            this.tokensPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.keysPerStripe = keysPerStripe;
+            this.clock = clock;
+            this.stripes = new Stripe[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+
+        long tryAcquire(Long key) {
+            Stripe stripe = stripeFor(key);
+            synchronized (stripe) {
+                // Đọc đồng hồ sau khi có khóa: thời điểm đọc trước khi chờ khóa có thể cũ hơn lần refill gần nhất
+                long now = clock.getAsLong();
+                Bucket bucket = stripe.buckets.get(key);
+                if (bucket == null) {
+                    if (stripe.buckets.size() >= keysPerStripe) {
+                        evictIdle(stripe, now);
+                    }
+                    bucket = new Bucket(capacity, now);
+                    stripe.buckets.put(key, bucket);
+                } else {
+                    refill(bucket, now);
+                }
+                if (bucket.tokens >= 1) {
+                    bucket.tokens -= 1;
+                    return 0;
+                }
+                return (long) Math.ceil((1 - bucket.tokens) / tokensPerNano);
+            }
+        }
+
+        void refund(Long key) {
+            Stripe stripe = stripeFor(key);
+            synchronized (stripe) {
+                Bucket bucket = stripe.buckets.get(key);
+                if (bucket != null) {
+                    bucket.tokens = Math.min(capacity, bucket.tokens + 1);
+                }
+            }
+        }
+
+        int size() {
+            int size = 0;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    size += stripe.buckets.size();
+                }
+            }
+            return size;
+        }
+
+        private void refill(Bucket bucket, long now) {
+            bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.refilledAt) * tokensPerNano);
+            bucket.refilledAt = now;
+        }
+
+        // Bucket đã đầy lại tương đương bucket mới tạo nên có thể bỏ; nếu vẫn hết chỗ thì xóa cả stripe
+        private void evictIdle(Stripe stripe, long now) {
+            Iterator<Bucket> iterator = stripe.buckets.values().iterator();
+            while (iterator.hasNext()) {
+                Bucket bucket = iterator.next();
+                refill(bucket, now);
+                if (bucket.tokens >= capacity) {
+                    iterator.remove();
+                }
+            }
+            if (stripe.buckets.size() >= keysPerStripe) {
+                stripe.buckets.clear();
+            }
+        }
+
+        private Stripe stripeFor(Long key) {
+            int h = key.hashCode();
+            h ^= (h >>> 16);
+            return stripes[(h & 0x7fffffff) % stripes.length];
+        }
+    }
+
+    private static class Stripe {
+        private final Map<Long, Bucket> buckets = new HashMap<>();
+    }
+}
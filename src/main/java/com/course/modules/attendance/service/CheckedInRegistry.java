@@ -0,0 +1,161 @@
+package com.course.modules.attendance.service;
+
+import com.course.modules.attendance.dto.CheckedInRegistryStatsDto;
+import com.course.modules.attendance.event.AttendanceCheckedInEvent;
+import com.course.modules.attendance.model.AttendanceStatus;
+import com.course.modules.attendance.repository.AttendanceRepository;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Bitmap nén (Roaring) các student id đã điểm danh cho từng buổi học.
+ * Nạp lười từ DB ở lần truy cập đầu tiên, sau đó được cập nhật sau mỗi check-in thành công,
+ * nên việc kiểm tra "đã điểm danh chưa" và đếm số có mặt không cần truy vấn DB.
+ * Số buổi giữ trong bộ nhớ bị giới hạn bởi attendance.checked-in-registry.max-sessions (bỏ buổi ít dùng nhất).
+ */
+@Component
+public class CheckedInRegistry {
+
+    private final AttendanceRepository attendanceRepository;
+    private final int maxSessions;
+
+    private final Map<Long, SessionRoster> rosters = new ConcurrentHashMap<>();
+
+    public CheckedInRegistry(AttendanceRepository attendanceRepository,
+                             @Value("${attendance.checked-in-registry.max-sessions:500}") int maxSessions) {
+        this.attendanceRepository = attendanceRepository;
+        this.maxSessions = maxSessions;
+    }
+
+    public boolean isCheckedIn(Long sessionId, Long studentId) {
+        return roster(sessionId).contains(studentId);
+    }
+
+    public void markCheckedIn(Long sessionId, Long studentId, AttendanceStatus status) {
+        roster(sessionId).add(studentId, status);
+    }
+
+    // Bỏ đánh dấu khi bản ghi write-behind không ghi được xuống DB, để sinh viên có thể check-in lại
+    public void unmark(Long sessionId, Long studentId) {
+        SessionRoster roster = rosters.get(sessionId);
+        if (roster != null) {
+            roster.remove(studentId);
+        }
+    }
+
+    // Chỉ đánh dấu sau khi check-in đã commit (rollback thì bitmap không bị lệch so với DB)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCheckedIn(AttendanceCheckedInEvent event) {
+        markCheckedIn(event.getSessionId(), event.getStudentId(), event.getStatus());
+    }
+
+    public SessionRoster getRoster(Long sessionId) {
+        return roster(sessionId);
+    }
+
+    public CheckedInRegistryStatsDto getStats() {
+        List<CheckedInRegistryStatsDto.SessionEntry> entries = rosters.entrySet().stream()
+                .map(e -> CheckedInRegistryStatsDto.SessionEntry.builder()
+                        .sessionId(e.getKey())
+                        .checkedInCount(e.getValue().getCheckedInCount())
+                        .lateCount(e.getValue().getLateCount())
+                        .sizeInBytes(e.getValue().getSizeInBytes())
+                        .build())
+                .sorted(Comparator.comparing(CheckedInRegistryStatsDto.SessionEntry::getSessionId))
+                .collect(Collectors.toList());
+
+        return CheckedInRegistryStatsDto.builder()
+                .sessions(entries.size())
+                .maxSessions(maxSessions)
+                .totalSizeInBytes(entries.stream().mapToLong(CheckedInRegistryStatsDto.SessionEntry::getSizeInBytes).sum())
+                .entries(entries)
+                .build();
+    }
+
+    private SessionRoster roster(Long sessionId) {
+        SessionRoster roster = rosters.get(sessionId);
+        if (roster == null) {
+            roster = rosters.computeIfAbsent(sessionId, this::load);
+            if (rosters.size() > maxSessions) {
+                evictLeastRecentlyUsed(sessionId);
+            }
+        }
+        roster.touch();
+        return roster;
+    }
+
+    private SessionRoster load(Long sessionId) {
+        SessionRoster roster = new SessionRoster();
+        for (AttendanceRepository.StudentStatusView row : attendanceRepository.findStudentStatusesBySessionId(sessionId)) {
+            roster.add(row.getStudentId(), row.getStatus());
+        }
+        return roster;
+    }
+
+    private void evictLeastRecentlyUsed(Long keep) {
+        while (rosters.size() > maxSessions) {
+            rosters.entrySet().stream()
+                    .filter(e -> !e.getKey().equals(keep))
+                    .min(Comparator.comparingLong(e -> e.getValue().getLastAccess()))
+                    .ifPresent(e -> rosters.remove(e.getKey(), e.getValue()));
+        }
+    }
+
+    /**
+     * Danh sách đã điểm danh của một buổi: bitmap tất cả sinh viên đã check-in và bitmap sinh viên đi trễ.
+     */
+    public static class SessionRoster {
+        private final Roaring64NavigableMap checkedIn = new Roaring64NavigableMap();
+        private final Roaring64NavigableMap late = new Roaring64NavigableMap();
+        private volatile long lastAccess = System.nanoTime();
+
+        synchronized boolean contains(long studentId) {
+            return checkedIn.contains(studentId);
+        }
+
+        synchronized void add(long studentId, AttendanceStatus status) {
+            checkedIn.addLong(studentId);
+            if (status == AttendanceStatus.LATE) {
+                late.addLong(studentId);
+            }
+        }
+
+        synchronized void remove(long studentId) {
+            checkedIn.removeLong(studentId);
+            late.removeLong(studentId);
+        }
+
+        public synchronized long getCheckedInCount() {
+            return checkedIn.getLongCardinality();
+        }
+
+        public synchronized long getLateCount() {
+            return late.getLongCardinality();
+        }
+
+        public synchronized long getPresentCount() {
+            return checkedIn.getLongCardinality() - late.getLongCardinality();
+        }
+
+        public synchronized long getSizeInBytes() {
+            return checkedIn.getLongSizeInBytes() + late.getLongSizeInBytes();
+        }
+
+        void touch() {
+            lastAccess = System.nanoTime();
+        }
+
+        long getLastAccess() {
+            return lastAccess;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.course.modules.course.model;
 
+import com.course.core.id.AssignedIdEntity;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -12,9 +13,9 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Course {
+public class Course extends AssignedIdEntity {
+    // Id do service cấp (IdBlockAllocator) trước khi mở transaction, xem AssignedIdEntity
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @Column(nullable = false, unique = true, length = 50)
@@ -1,9 +1,12 @@
 package com.course.modules.course.service;
 
+import com.course.core.id.IdBlockAllocator;
 import com.course.modules.course.model.Course;
 import com.course.modules.course.repository.CourseRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 
@@ -11,9 +14,15 @@ import java.util.List;
 public class CourseService {
 
     private final CourseRepository courseRepository;
+    private final IdBlockAllocator idBlockAllocator;
+    private final TransactionTemplate transactionTemplate;
 
-    public CourseService(CourseRepository courseRepository) {
+    public CourseService(CourseRepository courseRepository,
+                         IdBlockAllocator idBlockAllocator,
+                         PlatformTransactionManager transactionManager) {
         this.courseRepository = courseRepository;
+        this.idBlockAllocator = idBlockAllocator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     // Lấy danh sách tất cả khóa học
@@ -27,14 +36,16 @@ public class CourseService {
                 .orElseThrow(() -> new RuntimeException("Course not found with id: " + id));
     }
 
-    // Tạo khóa học mới
-    @Transactional
+    // Tạo khóa học mới (id cấp trước khi mở transaction)
     public Course createCourse(Course course) {
-        // Kiểm tra nếu mã khóa học đã tồn tại
-        if (courseRepository.findByCode(course.getCode()).isPresent()) {
-            throw new RuntimeException("Course code already exists: " + course.getCode());
-        }
-        return courseRepository.save(course);
+        course.setId(idBlockAllocator.nextId(IdBlockAllocator.COURSE));
+        return transactionTemplate.execute(tx -> {
+            // Kiểm tra nếu mã khóa học đã tồn tại
+            if (courseRepository.findByCode(course.getCode()).isPresent()) {
+                throw new RuntimeException("Course code already exists: " + course.getCode());
+            }
+            return courseRepository.save(course);
+        });
     }
 
     // Cập nhật khóa học
@@ -2,6 +2,8 @@ package com.course.modules.session.controller;
 
 import com.course.modules.session.dto.CreateSessionRequest;
 import com.course.modules.attendance.dto.QrTokenResponse;
+import com.course.modules.session.dto.QrTokenCacheStatsDto;
+import com.course.modules.session.dto.ScheduleSessionsRequest;
 import com.course.modules.session.dto.SessionDto;
 import com.course.modules.session.service.SessionService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -50,6 +52,31 @@ public class SessionController {
         }
     }
 
+    @PostMapping("/schedule")
+    @Operation(summary = "Create recurring sessions",
+            description = "Expand a weekly recurrence (days of week, interval, date range, time slot, excluded dates) into sessions and create them in one batched transaction")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Sessions created successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid schedule or course not found")
+    })
+    public ResponseEntity<?> scheduleSessions(@Valid @RequestBody ScheduleSessionsRequest request) {
+        try {
+            List<SessionDto> sessions = sessionService.scheduleSessions(request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(sessions);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/qr-cache/stats")
+    @Operation(summary = "Get QR token cache statistics",
+               description = "Hit/miss counters and size of the in-memory QR token cache used by check-in and scan")
+    @ApiResponse(responseCode = "200", description = "Cache statistics retrieved",
+            content = @Content(schema = @Schema(implementation = QrTokenCacheStatsDto.class)))
+    public ResponseEntity<QrTokenCacheStatsDto> getQrTokenCacheStats() {
+        return ResponseEntity.ok(sessionService.getQrTokenCacheStats());
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get session details", description = "Retrieve session information by ID")
     @ApiResponses(value = {
@@ -97,6 +124,25 @@ public class SessionController {
         }
     }
 
+    @GetMapping("/{id}/qr/current")
+    @Operation(summary = "Get current QR token",
+               description = "Return the QR token to display right now. In signed mode the token rotates "
+                       + "every rotationSeconds and this endpoint returns the current one without touching the database")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Current QR token",
+                    content = @Content(schema = @Schema(implementation = QrTokenResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Session not found or no active QR token")
+    })
+    public ResponseEntity<?> getCurrentQrToken(
+            @Parameter(description = "Session ID") @PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(sessionService.getCurrentQrToken(id));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
     // Inner class for error responses
     public static class ErrorResponse {
         private String message;
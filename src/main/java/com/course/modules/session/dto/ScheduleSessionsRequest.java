@@ -0,0 +1,47 @@
+package com.course.modules.session.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lịch học lặp lại: mỗi tuần (hoặc mỗi intervalWeeks tuần) vào các ngày daysOfWeek, từ startDate đến endDate,
+ * cùng khung giờ startTime - endTime. Các ngày trong excludedDates (nghỉ lễ) được bỏ qua.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ScheduleSessionsRequest {
+    @NotNull(message = "Course ID is required")
+    private Long courseId;
+
+    @NotNull(message = "Start date is required")
+    private LocalDate startDate;
+
+    @NotNull(message = "End date is required")
+    private LocalDate endDate;
+
+    @NotEmpty(message = "At least one day of week is required")
+    private Set<DayOfWeek> daysOfWeek;
+
+    @Min(value = 1, message = "Interval must be at least 1 week")
+    @Builder.Default
+    private int intervalWeeks = 1;
+
+    @NotNull(message = "Start time is required")
+    private LocalTime startTime;
+
+    @NotNull(message = "End time is required")
+    private LocalTime endTime;
+
+    private List<LocalDate> excludedDates;
+}
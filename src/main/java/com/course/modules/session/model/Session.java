@@ -1,5 +1,6 @@
 package com.course.modules.session.model;
 
+import com.course.core.id.AssignedIdEntity;
 import com.course.modules.course.model.Course;
 import jakarta.persistence.*;
 import lombok.*;
@@ -13,9 +14,9 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Session {
+public class Session extends AssignedIdEntity {
+    // Id do service cấp (IdBlockAllocator) trước khi mở transaction, xem AssignedIdEntity
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
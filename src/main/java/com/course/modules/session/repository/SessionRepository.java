@@ -2,6 +2,8 @@ package com.course.modules.session.repository;
 
 import com.course.modules.session.model.Session;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,5 +12,10 @@ import java.util.Optional;
 @Repository
 public interface SessionRepository extends JpaRepository<Session, Long> {
     List<Session> findByCourseId(Long courseId);
+    long countByCourseId(Long courseId);
     Optional<Session> findByIdAndQrToken(Long id, String qrToken);
+
+    // Lấy session kèm course trong 1 query (dùng khi nạp cache QR token)
+    @Query("SELECT s FROM Session s JOIN FETCH s.course WHERE s.id = :id")
+    Optional<Session> findWithCourseById(@Param("id") Long id);
 }
@@ -0,0 +1,167 @@
+package com.course.modules.session.service;
+
+import com.course.modules.session.dto.QrTokenCacheStatsDto;
+import com.course.modules.session.model.Session;
+import com.course.modules.session.repository.SessionRepository;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache QR token đang hoạt động theo session id.
+ * Khi token còn hạn, việc kiểm tra token/hết hạn ở check-in và scan không cần đọc bảng session.
+ * Mọi chỗ ghi session (token, giờ bắt đầu, ...) phải gọi evict: entry bị bỏ sau khi transaction commit
+ * và lần đọc tiếp theo nạp lại từ DB. Snapshot đọc từ DB trước một lần evict không được đưa vào cache,
+ * nên không ghi đè được dữ liệu mới.
+ */
+@Component
+public class QrTokenCache {
+
+    private final SessionRepository sessionRepository;
+    private final int maxSize;
+
+    private final Map<Long, CachedSession> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // Tăng ở mỗi lần evict; lần nạp nào thấy giá trị đổi trong lúc đọc DB thì không lưu snapshot (có thể đã cũ)
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public QrTokenCache(SessionRepository sessionRepository,
+                        @Value("${attendance.qr-cache.max-size:1000}") int maxSize) {
+        this.sessionRepository = sessionRepository;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Trả về snapshot của session: lấy từ cache nếu token còn hạn, ngược lại đọc DB
+     * (và đưa vào cache nếu token trong DB còn hạn).
+     */
+    public CachedSession getOrLoad(Long sessionId) {
+        CachedSession cached = entries.get(sessionId);
+        if (cached != null) {
+            if (cached.isTokenActive(LocalDateTime.now())) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            // Token đã hết hạn -> bỏ khỏi cache, để DB quyết định
+            entries.remove(sessionId, cached);
+        }
+        misses.incrementAndGet();
+
+        long seen = invalidations.get();
+        Session session = sessionRepository.findWithCourseById(sessionId)
+                .orElseThrow(() -> new RuntimeException("Session not found"));
+        CachedSession loaded = CachedSession.from(session);
+        if (loaded.isTokenActive(LocalDateTime.now())) {
+            store(loaded, seen);
+        }
+        return loaded;
+    }
+
+    /**
+     * Bỏ snapshot của session sau khi nó được ghi. Nếu đang trong transaction thì chỉ bỏ khi transaction commit:
+     * trước đó DB vẫn là dữ liệu cũ, và transaction bị rollback thì dữ liệu cũ vẫn đúng.
+     */
+    public void evict(Long sessionId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(sessionId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(sessionId);
+            }
+        });
+    }
+
+    public QrTokenCacheStatsDto getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        return QrTokenCacheStatsDto.builder()
+                .size(entries.size())
+                .maxSize(maxSize)
+                .hits(hitCount)
+                .misses(missCount)
+                .evictions(evictions.get())
+                .hitRate(total > 0 ? (double) hitCount / total * 100 : 0)
+                .build();
+    }
+
+    // Tăng bộ đếm trước khi bỏ entry: lần nạp đang chạy hoặc thấy bộ đếm đổi, hoặc đã lưu trước khi entry bị bỏ
+    private void invalidate(Long sessionId) {
+        invalidations.incrementAndGet();
+        entries.remove(sessionId);
+    }
+
+    private void store(CachedSession entry, long seenInvalidations) {
+        entries.compute(entry.getSessionId(),
+                (id, current) -> invalidations.get() == seenInvalidations ? entry : current);
+        if (entries.size() > maxSize) {
+            evictOverflow();
+        }
+    }
+
+    // Chỉ chạy khi ghi (hiếm) nên chấp nhận duyệt toàn bộ: bỏ token hết hạn trước, sau đó bỏ token sắp hết hạn nhất
+    private synchronized void evictOverflow() {
+        LocalDateTime now = LocalDateTime.now();
+        entries.values().removeIf(e -> {
+            boolean expired = !e.isTokenActive(now);
+            if (expired) evictions.incrementAndGet();
+            return expired;
+        });
+        while (entries.size() > maxSize) {
+            entries.values().stream()
+                    .min(Comparator.comparing(CachedSession::getQrTokenExpiresAt))
+                    .ifPresent(e -> {
+                        if (entries.remove(e.getSessionId(), e)) evictions.incrementAndGet();
+                    });
+        }
+    }
+
+    /**
+     * Bản chụp bất biến các trường của Session mà luồng check-in/scan cần.
+     */
+    @Getter
+    @Builder
+    @AllArgsConstructor
+    public static class CachedSession {
+        private final Long sessionId;
+        private final Long courseId;
+        private final String courseCode;
+        private final String courseTitle;
+        private final LocalDateTime sessionDate;
+        private final LocalDateTime startTime;
+        private final String qrToken;
+        private final LocalDateTime qrTokenExpiresAt;
+
+        public boolean isTokenActive(LocalDateTime now) {
+            return qrToken != null && qrTokenExpiresAt != null && qrTokenExpiresAt.isAfter(now);
+        }
+
+        static CachedSession from(Session session) {
+            return CachedSession.builder()
+                    .sessionId(session.getId())
+                    .courseId(session.getCourse().getId())
+                    .courseCode(session.getCourse().getCode())
+                    .courseTitle(session.getCourse().getTitle())
+                    .sessionDate(session.getSessionDate())
+                    .startTime(session.getStartTime())
+                    .qrToken(session.getQrToken())
+                    .qrTokenExpiresAt(session.getQrTokenExpiresAt())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.course.modules.session.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+
+/**
+ * QR token tự mô tả, ký HMAC-SHA256 (attendance.qr.mode=signed).
+ * Token có dạng {sessionId}.{timeStep}.{expiresAtEpochSecond}.{signature} và đổi sau mỗi
+ * attendance.qr.rotation-seconds giây (giống TOTP), nên có thể xác thực chỉ bằng CPU, không cần đọc DB.
+ * Token của bước liền trước vẫn được chấp nhận để bù độ trễ giữa lúc máy chiếu hiển thị và lúc sinh viên quét.
+ */
+@Slf4j
+@Component
+public class QrTokenSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    public enum Verification {
+        VALID,
+        INVALID,
+        EXPIRED
+    }
+
+    private final boolean enabled;
+    private final long rotationSeconds;
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> mac;
+
+    public QrTokenSigner(@Value("${attendance.qr.mode:random}") String mode,
+                         @Value("${attendance.qr.rotation-seconds:30}") long rotationSeconds,
+                         @Value("${attendance.qr.signing-key:}") String signingKey) {
+        // Bước thời gian = epochSecond / rotationSeconds: giá trị <= 0 làm mọi lần sinh/quét token lỗi chia cho 0
+        if (rotationSeconds <= 0) {
+            throw new IllegalArgumentException("attendance.qr.rotation-seconds must be positive");
+        }
+        this.enabled = "signed".equalsIgnoreCase(mode);
+        this.rotationSeconds = rotationSeconds;
+
+        byte[] keyBytes;
+        if (StringUtils.hasText(signingKey)) {
+            keyBytes = signingKey.getBytes(StandardCharsets.UTF_8);
+        } else {
+            // Không cấu hình key: sinh key ngẫu nhiên (chỉ phù hợp khi chạy 1 instance, token mất hiệu lực khi restart)
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+            if (enabled) {
+                log.warn("attendance.qr.signing-key is not set, using a random key for signed QR tokens");
+            }
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::newMac);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getRotationSeconds() {
+        return rotationSeconds;
+    }
+
+    /**
+     * Token của bước thời gian hiện tại cho một session có cửa sổ điểm danh kết thúc lúc expiresAt.
+     */
+    public String currentToken(Long sessionId, LocalDateTime expiresAt) {
+        long now = nowEpochSecond();
+        return sign(sessionId, now / rotationSeconds, toEpochSecond(expiresAt));
+    }
+
+    public Verification verify(Long sessionId, String token) {
+        if (token == null) return Verification.INVALID;
+        String[] parts = token.split("\\.");
+        if (parts.length != 4) return Verification.INVALID;
+
+        long tokenSessionId;
+        long step;
+        long expiresAt;
+        try {
+            tokenSessionId = Long.parseLong(parts[0]);
+            step = Long.parseLong(parts[1]);
+            expiresAt = Long.parseLong(parts[2]);
+        } catch (NumberFormatException e) {
+            return Verification.INVALID;
+        }
+        if (sessionId == null || tokenSessionId != sessionId) return Verification.INVALID;
+
+        byte[] expected = signature(payload(tokenSessionId, step, expiresAt));
+        byte[] provided;
+        try {
+            provided = Base64.getUrlDecoder().decode(parts[3]);
+        } catch (IllegalArgumentException e) {
+            return Verification.INVALID;
+        }
+        if (!MessageDigest.isEqual(expected, provided)) return Verification.INVALID;
+
+        long now = nowEpochSecond();
+        long currentStep = now / rotationSeconds;
+        if (step > currentStep) return Verification.INVALID;
+        if (expiresAt <= now || currentStep - step > 1) return Verification.EXPIRED;
+        return Verification.VALID;
+    }
+
+    // Tách riêng để test điều khiển được thời gian
+    long nowEpochSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private String sign(long sessionId, long step, long expiresAt) {
+        String payload = payload(sessionId, step, expiresAt);
+        return payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(signature(payload));
+    }
+
+    private static String payload(long sessionId, long step, long expiresAt) {
+        return sessionId + "." + step + "." + expiresAt;
+    }
+
+    private byte[] signature(String payload) {
+        return mac.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(key);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + ALGORITHM, e);
+        }
+    }
+
+    private static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+}
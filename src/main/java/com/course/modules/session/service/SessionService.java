@@ -1,19 +1,32 @@
 package com.course.modules.session.service;
 
+import com.course.core.id.IdBlockAllocator;
 import com.course.modules.session.dto.CreateSessionRequest;
 import com.course.modules.attendance.dto.QrTokenResponse;
+import com.course.modules.session.dto.QrTokenCacheStatsDto;
+import com.course.modules.session.dto.ScheduleSessionsRequest;
 import com.course.modules.session.dto.SessionDto;
 import com.course.modules.course.model.Course;
 import com.course.modules.session.model.Session;
 import com.course.modules.course.repository.CourseRepository;
 import com.course.modules.session.repository.SessionRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.security.SecureRandom;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,52 +34,155 @@ public class SessionService {
 
     private final SessionRepository sessionRepository;
     private final CourseRepository courseRepository;
+    private final QrTokenCache qrTokenCache;
+    private final QrTokenSigner qrTokenSigner;
+    private final IdBlockAllocator idBlockAllocator;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxScheduledSessions;
     private static final SecureRandom secureRandom = new SecureRandom();
 
-    public SessionService(SessionRepository sessionRepository, CourseRepository courseRepository) {
+    public SessionService(SessionRepository sessionRepository,
+                          CourseRepository courseRepository,
+                          QrTokenCache qrTokenCache,
+                          QrTokenSigner qrTokenSigner,
+                          IdBlockAllocator idBlockAllocator,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${session.schedule.max-sessions:500}") int maxScheduledSessions) {
         this.sessionRepository = sessionRepository;
         this.courseRepository = courseRepository;
+        this.qrTokenCache = qrTokenCache;
+        this.qrTokenSigner = qrTokenSigner;
+        this.idBlockAllocator = idBlockAllocator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxScheduledSessions = maxScheduledSessions;
     }
 
-    @Transactional
     public SessionDto createSession(CreateSessionRequest request) {
-        Course course = courseRepository.findById(request.getCourseId())
-                .orElseThrow(() -> new RuntimeException("Course not found with id: " + request.getCourseId()));
-
-        Session session = Session.builder()
-                .course(course)
-                .sessionDate(request.getSessionDate())
-                .startTime(request.getStartTime())
-                .endTime(request.getEndTime())
-                .build();
+        // Cấp id trước khi mở transaction
+        Long sessionId = idBlockAllocator.nextId(IdBlockAllocator.SESSION);
+        return transactionTemplate.execute(tx -> {
+            Course course = courseRepository.findById(request.getCourseId())
+                    .orElseThrow(() -> new RuntimeException("Course not found with id: " + request.getCourseId()));
+
+            Session session = Session.builder()
+                    .id(sessionId)
+                    .course(course)
+                    .sessionDate(request.getSessionDate())
+                    .startTime(request.getStartTime())
+                    .endTime(request.getEndTime())
+                    .build();
+
+            return toDto(sessionRepository.save(session));
+        });
+    }
 
-        session = sessionRepository.save(session);
-        return toDto(session);
+    /**
+     * Sinh toàn bộ buổi học của một lịch lặp lại và lưu trong 1 transaction.
+     * Cả khối id được cấp một lần trước khi mở transaction; id có sẵn nên Hibernate gộp các INSERT
+     * thành JDBC batch (hibernate.jdbc.batch_size).
+     */
+    public List<SessionDto> scheduleSessions(ScheduleSessionsRequest request) {
+        if (request.getEndDate().isBefore(request.getStartDate())) {
+            throw new RuntimeException("End date must not be before start date");
+        }
+        if (!request.getEndTime().isAfter(request.getStartTime())) {
+            throw new RuntimeException("End time must be after start time");
+        }
+        List<LocalDate> dates = expandSchedule(request);
+        long firstId = idBlockAllocator.allocate(IdBlockAllocator.SESSION, dates.size());
+
+        return transactionTemplate.execute(tx -> {
+            Course course = courseRepository.findById(request.getCourseId())
+                    .orElseThrow(() -> new RuntimeException("Course not found with id: " + request.getCourseId()));
+
+            List<Session> sessions = new ArrayList<>(dates.size());
+            for (int i = 0; i < dates.size(); i++) {
+                LocalDate date = dates.get(i);
+                sessions.add(Session.builder()
+                        .id(firstId + i)
+                        .course(course)
+                        .sessionDate(date.atStartOfDay())
+                        .startTime(date.atTime(request.getStartTime()))
+                        .endTime(date.atTime(request.getEndTime()))
+                        .build());
+            }
+            return sessionRepository.saveAll(sessions).stream()
+                    .map(this::toDto)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    // Các ngày có buổi học: đúng thứ trong tuần, không bị loại trừ, và thuộc tuần thứ 0, k, 2k, ...
+    // tính từ tuần (thứ Hai) chứa startDate, với k = intervalWeeks
+    List<LocalDate> expandSchedule(ScheduleSessionsRequest request) {
+        Set<LocalDate> excluded = request.getExcludedDates() == null
+                ? Set.of() : new HashSet<>(request.getExcludedDates());
+        LocalDate firstWeek = request.getStartDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date = request.getStartDate(); !date.isAfter(request.getEndDate()); date = date.plusDays(1)) {
+            if (!request.getDaysOfWeek().contains(date.getDayOfWeek()) || excluded.contains(date)) continue;
+            long week = ChronoUnit.WEEKS.between(firstWeek, date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)));
+            if (week % request.getIntervalWeeks() != 0) continue;
+            if (dates.size() >= maxScheduledSessions) {
+                throw new RuntimeException("Schedule expands to more than " + maxScheduledSessions + " sessions");
+            }
+            dates.add(date);
+        }
+        if (dates.isEmpty()) {
+            throw new RuntimeException("Schedule does not contain any session");
+        }
+        return dates;
     }
 
     @Transactional
     public QrTokenResponse generateQrToken(Long sessionId, int validityMinutes) {
-        Session session = sessionRepository.findById(sessionId)
+        Session session = sessionRepository.findWithCourseById(sessionId)
                 .orElseThrow(() -> new RuntimeException("Session not found with id: " + sessionId));
 
-        // Generate secure random token
-        byte[] randomBytes = new byte[32];
-        secureRandom.nextBytes(randomBytes);
-        String qrToken = Base64.getUrlEncoder().withoutPadding().encodeToString(randomBytes);
-
         // Set expiry time
         LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(validityMinutes);
 
+        String qrToken;
+        if (qrTokenSigner.isEnabled()) {
+            // Token ký HMAC, tự đổi theo chu kỳ; DB chỉ cần lưu hạn của cửa sổ điểm danh
+            qrToken = qrTokenSigner.currentToken(sessionId, expiresAt);
+        } else {
+            qrToken = randomQrToken();
+        }
+
         session.setQrToken(qrToken);
         session.setQrTokenExpiresAt(expiresAt);
         sessionRepository.save(session);
 
-        return QrTokenResponse.builder()
-                .sessionId(session.getId())
-                .qrToken(qrToken)
-                .checkInUrl("/api/attendance/scan?sessionId=" + sessionId + "&token=" + qrToken)
-                .expiresAt(expiresAt.toString())
-                .build();
+        // Bỏ snapshot cũ sau khi commit; check-in/scan đầu tiên nạp lại token mới từ DB
+        qrTokenCache.evict(sessionId);
+
+        return toQrTokenResponse(sessionId, qrToken, expiresAt);
+    }
+
+    /**
+     * Token ngẫu nhiên của chế độ attendance.qr.mode=random: 32 byte SecureRandom, Base64 URL-safe không padding.
+     */
+    public static String randomQrToken() {
+        byte[] randomBytes = new byte[32];
+        secureRandom.nextBytes(randomBytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(randomBytes);
+    }
+
+    /**
+     * Token đang hiệu lực để máy chiếu hiển thị. Ở chế độ signed, token được tính lại theo bước thời gian
+     * hiện tại nên màn hình chỉ cần gọi lại API này, không cần sinh lại token.
+     */
+    public QrTokenResponse getCurrentQrToken(Long sessionId) {
+        QrTokenCache.CachedSession session = qrTokenCache.getOrLoad(sessionId);
+        if (!session.isTokenActive(LocalDateTime.now())) {
+            throw new RuntimeException("No active QR token for session with id: " + sessionId);
+        }
+        String qrToken = qrTokenSigner.isEnabled()
+                ? qrTokenSigner.currentToken(sessionId, session.getQrTokenExpiresAt())
+                : session.getQrToken();
+        return toQrTokenResponse(sessionId, qrToken, session.getQrTokenExpiresAt());
     }
 
     public SessionDto getSession(Long id) {
@@ -81,6 +197,20 @@ public class SessionService {
                 .collect(Collectors.toList());
     }
 
+    public QrTokenCacheStatsDto getQrTokenCacheStats() {
+        return qrTokenCache.getStats();
+    }
+
+    private QrTokenResponse toQrTokenResponse(Long sessionId, String qrToken, LocalDateTime expiresAt) {
+        return QrTokenResponse.builder()
+                .sessionId(sessionId)
+                .qrToken(qrToken)
+                .checkInUrl("/api/attendance/scan?sessionId=" + sessionId + "&token=" + qrToken)
+                .expiresAt(expiresAt.toString())
+                .rotationSeconds(qrTokenSigner.isEnabled() ? qrTokenSigner.getRotationSeconds() : null)
+                .build();
+    }
+
     private SessionDto toDto(Session session) {
         boolean isActive = session.getQrToken() != null &&
                 session.getQrTokenExpiresAt() != null &&
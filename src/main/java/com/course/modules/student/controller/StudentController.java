@@ -1,7 +1,11 @@
 package com.course.modules.student.controller;
 
+import com.course.core.dto.CursorPage;
+import com.course.core.exception.BadRequestException;
 import com.course.modules.student.dto.StudentDto;
+import com.course.modules.student.dto.StudentImportResultDto;
 import com.course.modules.student.model.Student;
+import com.course.modules.student.service.StudentImportService;
 import com.course.modules.student.service.StudentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -12,9 +16,13 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
 
 @RestController
 @RequestMapping("/api/students")
@@ -23,9 +31,11 @@ import org.springframework.web.bind.annotation.*;
 public class StudentController {
 
     private final StudentService studentService;
+    private final StudentImportService studentImportService;
 
-    public StudentController(StudentService studentService) {
+    public StudentController(StudentService studentService, StudentImportService studentImportService) {
         this.studentService = studentService;
+        this.studentImportService = studentImportService;
     }
 
     // Hàm chuyển đổi từ Entity sang DTO
@@ -56,6 +66,22 @@ public class StudentController {
         return ResponseEntity.ok(dtoPage);
     }
 
+    @GetMapping("/cursor")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Get students with cursor pagination (no total count)",
+            description = "sortBy is id, studentNumber or fullName. Pass nextCursor from the previous page with the same sortBy/sortDir")
+    public ResponseEntity<CursorPage<StudentDto>> getStudentSlice(
+            @Parameter(description = "Cursor returned by the previous page")
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir
+    ) {
+        boolean ascending = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name());
+        CursorPage<StudentDto> slice = studentService.getStudentSlice(sortBy, ascending, cursor, size);
+        return ResponseEntity.ok(slice);
+    }
+
     @GetMapping("/search")
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(summary = "Search students (Returns DTOs)")
@@ -91,4 +117,16 @@ public class StudentController {
         Student createdStudent = studentService.createStudent(student);
         return ResponseEntity.status(HttpStatus.CREATED).body(mapToDto(createdStudent));
     }
-}
\ No newline at end of file
+
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Bulk import students from CSV",
+            description = "CSV with a header row containing student_number, full_name, email. Returns per-row errors")
+    public ResponseEntity<StudentImportResultDto> importStudents(
+            @Parameter(description = "CSV file") @RequestParam("file") MultipartFile file) throws IOException {
+        if (file.isEmpty()) {
+            throw new BadRequestException("CSV file is empty");
+        }
+        return ResponseEntity.ok(studentImportService.importCsv(file.getInputStream()));
+    }
+}
@@ -0,0 +1,28 @@
+package com.course.modules.student.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StudentImportResultDto {
+    private long totalRows;
+    private long imported;
+    private long failed;
+    private List<RowError> errors; // Chỉ giữ tối đa student.import.max-errors lỗi đầu tiên
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class RowError {
+        private long line;
+        private String studentNumber;
+        private String message;
+    }
+}
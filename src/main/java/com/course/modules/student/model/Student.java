@@ -1,5 +1,6 @@
 package com.course.modules.student.model;
 
+import com.course.core.id.AssignedIdEntity;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -10,9 +11,9 @@ import lombok.*;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Student {
+public class Student extends AssignedIdEntity {
+    // Id do service cấp (IdBlockAllocator) trước khi mở transaction, xem AssignedIdEntity
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @Column(name = "student_number", nullable = false, unique = true, length = 50)
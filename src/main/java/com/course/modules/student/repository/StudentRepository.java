@@ -8,16 +8,37 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface StudentRepository extends JpaRepository<Student, Long> {
+public interface StudentRepository extends JpaRepository<Student, Long>, StudentRepositoryCustom {
 
     Optional<Student> findByStudentNumber(String studentNumber);
 
     Optional<Student> findByEmail(String email);
 
-    // Tìm kiếm theo Tên hoặc Mã số (không phân biệt hoa thường)
-    @Query("SELECT s FROM Student s WHERE lower(s.fullName) LIKE lower(concat('%', :keyword, '%')) OR lower(s.studentNumber) LIKE lower(concat('%', :keyword, '%'))")
+    // Kiểm tra trùng theo tập (1 truy vấn cho cả chunk khi import hàng loạt)
+    @Query("SELECT s.studentNumber FROM Student s WHERE s.studentNumber IN :studentNumbers")
+    List<String> findExistingStudentNumbers(@Param("studentNumbers") Collection<String> studentNumbers);
+
+    @Query("SELECT s.email FROM Student s WHERE s.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query("SELECT s.id FROM Student s WHERE s.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // Tìm kiếm theo Tên hoặc Mã số qua FULLTEXT ngram (ft_student_search). keyword là biểu thức BOOLEAN MODE đã escape.
+    // Collation mặc định của MySQL không phân biệt hoa thường. Sort của pageable phải dùng tên cột.
+    @Query(value = "SELECT * FROM student s WHERE MATCH(s.full_name, s.student_number) AGAINST (:keyword IN BOOLEAN MODE)",
+            countQuery = "SELECT COUNT(*) FROM student s WHERE MATCH(s.full_name, s.student_number) AGAINST (:keyword IN BOOLEAN MODE)",
+            nativeQuery = true)
     Page<Student> searchStudents(@Param("keyword") String keyword, Pageable pageable);
+
+    // Từ khóa ngắn hơn ngram_token_size không có trong FULLTEXT index: tìm theo tiền tố (dùng index B-tree của 2 cột)
+    @Query(value = "SELECT * FROM student s WHERE s.student_number LIKE :prefix OR s.full_name LIKE :prefix",
+            countQuery = "SELECT COUNT(*) FROM student s WHERE s.student_number LIKE :prefix OR s.full_name LIKE :prefix",
+            nativeQuery = true)
+    Page<Student> searchStudentsByPrefix(@Param("prefix") String prefix, Pageable pageable);
 }
\ No newline at end of file
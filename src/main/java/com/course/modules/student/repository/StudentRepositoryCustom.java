@@ -0,0 +1,14 @@
+package com.course.modules.student.repository;
+
+import com.course.modules.student.dto.StudentDto;
+
+import java.util.List;
+
+public interface StudentRepositoryCustom {
+
+    /**
+     * Một lát (slice) StudentDto theo keyset: sắp theo (sortProperty, id) và chỉ lấy các dòng đứng sau
+     * (lastValue, lastId). lastId null = trang đầu. Không chạy COUNT.
+     */
+    List<StudentDto> findDtoSlice(String sortProperty, boolean ascending, Object lastValue, Long lastId, int limit);
+}
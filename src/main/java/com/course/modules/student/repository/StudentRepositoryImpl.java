@@ -0,0 +1,61 @@
+package com.course.modules.student.repository;
+
+import com.course.modules.student.dto.StudentDto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.List;
+import java.util.Set;
+
+// Phần cài đặt thêm của StudentRepository (Spring Data tự ghép theo hậu tố Impl)
+public class StudentRepositoryImpl implements StudentRepositoryCustom {
+
+    // Chỉ cho phép sắp theo cột có index: id (PK), studentNumber (unique), fullName (idx_student_full_name)
+    private static final Set<String> SORT_PROPERTIES = Set.of("id", "studentNumber", "fullName");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<StudentDto> findDtoSlice(String sortProperty, boolean ascending, Object lastValue, Long lastId, int limit) {
+        if (!SORT_PROPERTIES.contains(sortProperty)) {
+            throw new IllegalArgumentException("Unsupported sort field: " + sortProperty);
+        }
+        String dir = ascending ? "ASC" : "DESC";
+        String cmp = ascending ? ">" : "<";
+        boolean byId = "id".equals(sortProperty);
+        String key = "s." + sortProperty;
+
+        StringBuilder jpql = new StringBuilder(
+                "SELECT new com.course.modules.student.dto.StudentDto(s.id, s.studentNumber, s.fullName, s.email) FROM Student s");
+        if (lastId != null) {
+            if (byId) {
+                jpql.append(" WHERE s.id ").append(cmp).append(" :lastId");
+            } else if (lastValue == null) {
+                // MySQL xếp NULL trước khi ASC, sau khi DESC
+                jpql.append(ascending
+                        ? " WHERE " + key + " IS NOT NULL OR (" + key + " IS NULL AND s.id > :lastId)"
+                        : " WHERE " + key + " IS NULL AND s.id < :lastId");
+            } else {
+                jpql.append(" WHERE (").append(key).append(' ').append(cmp).append(" :lastValue OR (")
+                        .append(key).append(" = :lastValue AND s.id ").append(cmp).append(" :lastId)")
+                        .append(ascending ? ")" : " OR " + key + " IS NULL)");
+            }
+        }
+        jpql.append(" ORDER BY ");
+        if (!byId) {
+            jpql.append(key).append(' ').append(dir).append(", ");
+        }
+        jpql.append("s.id ").append(dir);
+
+        TypedQuery<StudentDto> query = entityManager.createQuery(jpql.toString(), StudentDto.class);
+        if (lastId != null) {
+            query.setParameter("lastId", lastId);
+            if (!byId && lastValue != null) {
+                query.setParameter("lastValue", lastValue);
+            }
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,288 @@
+package com.course.modules.student.service;
+
+import com.course.core.exception.BadRequestException;
+import com.course.core.id.IdBlockAllocator;
+import com.course.modules.student.dto.StudentImportResultDto;
+import com.course.modules.student.repository.StudentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Import sinh viên hàng loạt từ CSV (cột student_number, full_name, email; dòng đầu là header).
+ * File được đọc từng dòng và xử lý theo chunk: kiểm tra dữ liệu, kiểm tra trùng bằng 2 truy vấn IN cho cả chunk,
+ * rồi INSERT bằng JDBC batch (rewriteBatchedStatements gộp thành INSERT nhiều dòng).
+ * Dòng lỗi không làm hỏng cả file: kết quả trả về số dòng đã import và danh sách lỗi theo số dòng.
+ */
+@Slf4j
+@Service
+public class StudentImportService {
+
+    private static final String INSERT_SQL = "INSERT INTO student (id, student_number, full_name, email) VALUES (?, ?, ?, ?)";
+    private static final Pattern EMAIL = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+
+    private final StudentRepository studentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final IdBlockAllocator idBlockAllocator;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    public StudentImportService(StudentRepository studentRepository,
+                                JdbcTemplate jdbcTemplate,
+                                IdBlockAllocator idBlockAllocator,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${student.import.chunk-size:1000}") int chunkSize,
+                                @Value("${student.import.max-errors:1000}") int maxErrors) {
+        this.studentRepository = studentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.idBlockAllocator = idBlockAllocator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    public StudentImportResultDto importCsv(InputStream input) throws IOException {
+        Result result = new Result();
+        // Khóa đã gặp trong file (chữ thường, giống collation không phân biệt hoa thường của MySQL)
+        Set<String> seenNumbers = new HashSet<>();
+        Set<String> seenEmails = new HashSet<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new BadRequestException("CSV file is empty");
+            }
+            int[] columns = resolveColumns(parseLine(stripBom(header)));
+
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            String line;
+            long lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                result.total++;
+
+                Row row;
+                try {
+                    row = toRow(lineNumber, parseLine(line), columns);
+                } catch (IllegalArgumentException e) {
+                    result.fail(lineNumber, null, e.getMessage());
+                    continue;
+                }
+                if (!seenNumbers.add(row.numberKey())) {
+                    result.fail(lineNumber, row.studentNumber, "Duplicate student number in file");
+                    continue;
+                }
+                if (row.email != null && !seenEmails.add(row.emailKey())) {
+                    result.fail(lineNumber, row.studentNumber, "Duplicate email in file");
+                    continue;
+                }
+
+                chunk.add(row);
+                if (chunk.size() >= chunkSize) {
+                    importChunk(chunk, result);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(chunk, result);
+            }
+        }
+
+        return StudentImportResultDto.builder()
+                .totalRows(result.total)
+                .imported(result.imported)
+                .failed(result.failed)
+                .errors(result.errors)
+                .build();
+    }
+
+    private void importChunk(List<Row> chunk, Result result) {
+        // Kiểm tra trùng với DB: 2 truy vấn IN cho cả chunk thay vì 2 truy vấn mỗi dòng
+        Set<String> existingNumbers = studentRepository.findExistingStudentNumbers(
+                        chunk.stream().map(r -> r.studentNumber).collect(Collectors.toList()))
+                .stream().map(StudentImportService::key).collect(Collectors.toSet());
+        List<String> emails = chunk.stream().map(r -> r.email).filter(e -> e != null).collect(Collectors.toList());
+        Set<String> existingEmails = emails.isEmpty() ? Set.of()
+                : studentRepository.findExistingEmails(emails).stream().map(StudentImportService::key).collect(Collectors.toSet());
+
+        List<Row> toInsert = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            if (existingNumbers.contains(row.numberKey())) {
+                result.fail(row.line, row.studentNumber, "Student number already exists: " + row.studentNumber);
+            } else if (row.email != null && existingEmails.contains(row.emailKey())) {
+                result.fail(row.line, row.studentNumber, "Email already exists: " + row.email);
+            } else {
+                toInsert.add(row);
+            }
+        }
+        if (toInsert.isEmpty()) return;
+
+        // Id lấy theo khối từ id_sequence (dùng chung với nextId của các entity), không dùng auto_increment
+        long firstId = idBlockAllocator.allocate(IdBlockAllocator.STUDENT, toInsert.size());
+        for (int i = 0; i < toInsert.size(); i++) {
+            toInsert.get(i).id = firstId + i;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(tx -> jdbcTemplate.batchUpdate(INSERT_SQL, toInsert, toInsert.size(),
+                    (ps, r) -> {
+                        ps.setLong(1, r.id);
+                        ps.setString(2, r.studentNumber);
+                        ps.setString(3, r.fullName);
+                        ps.setString(4, r.email);
+                    }));
+            result.imported += toInsert.size();
+        } catch (DataAccessException | TransactionException e) {
+            // Có thể có bản ghi được tạo đồng thời giữa lúc kiểm tra và lúc INSERT: ghi lại từng dòng để báo lỗi chính xác
+            log.warn("Batch insert of {} students failed, retrying row by row: {}", toInsert.size(), e.getMessage());
+            for (Row row : toInsert) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, row.id, row.studentNumber, row.fullName, row.email);
+                    result.imported++;
+                } catch (DuplicateKeyException duplicate) {
+                    result.fail(row.line, row.studentNumber, "Student number or email already exists");
+                } catch (DataAccessException rowError) {
+                    result.fail(row.line, row.studentNumber, rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private static int[] resolveColumns(List<String> header) {
+        int[] columns = {-1, -1, -1};
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT);
+            switch (name) {
+                case "studentnumber" -> columns[0] = i;
+                case "fullname" -> columns[1] = i;
+                case "email" -> columns[2] = i;
+                default -> { }
+            }
+        }
+        if (columns[0] < 0) {
+            throw new BadRequestException("CSV header must contain a student_number column");
+        }
+        return columns;
+    }
+
+    private static Row toRow(long line, List<String> fields, int[] columns) {
+        String studentNumber = field(fields, columns[0]);
+        String fullName = field(fields, columns[1]);
+        String email = field(fields, columns[2]);
+
+        if (studentNumber == null) throw new IllegalArgumentException("Student number is required");
+        if (studentNumber.length() > 50) throw new IllegalArgumentException("Student number is longer than 50 characters");
+        if (fullName != null && fullName.length() > 255) throw new IllegalArgumentException("Full name is longer than 255 characters");
+        if (email != null && (email.length() > 255 || !EMAIL.matcher(email).matches())) {
+            throw new IllegalArgumentException("Invalid email: " + email);
+        }
+        return new Row(line, studentNumber, fullName, email);
+    }
+
+    private static String field(List<String> fields, int index) {
+        if (index < 0 || index >= fields.size()) return null;
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // Tách 1 dòng CSV (RFC 4180, không hỗ trợ xuống dòng bên trong trường có nháy kép)
+    static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(ch);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    static String stripBom(String line) {
+        return !line.isEmpty() && line.charAt(0) == '\uFEFF' ? line.substring(1) : line;
+    }
+
+    private static String key(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static class Row {
+        private final long line;
+        private final String studentNumber;
+        private final String fullName;
+        private final String email;
+        private long id;
+
+        Row(long line, String studentNumber, String fullName, String email) {
+            this.line = line;
+            this.studentNumber = studentNumber;
+            this.fullName = fullName;
+            this.email = email;
+        }
+
+        String numberKey() {
+            return key(studentNumber);
+        }
+
+        String emailKey() {
+            return key(email);
+        }
+    }
+
+    private class Result {
+        private long total;
+        private long imported;
+        private long failed;
+        private final List<StudentImportResultDto.RowError> errors = new ArrayList<>();
+
+        void fail(long line, String studentNumber, String message) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                errors.add(StudentImportResultDto.RowError.builder()
+                        .line(line)
+                        .studentNumber(studentNumber)
+                        .message(message)
+                        .build());
+            }
+        }
+    }
+}
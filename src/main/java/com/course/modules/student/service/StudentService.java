@@ -1,27 +1,126 @@
 package com.course.modules.student.service;
 
+import com.course.core.dto.CursorPage;
+import com.course.core.exception.BadRequestException;
+import com.course.core.id.IdBlockAllocator;
+import com.course.modules.student.dto.StudentDto;
 import com.course.modules.student.model.Student;
 import com.course.modules.student.repository.StudentRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class StudentService {
 
+    // Tên thuộc tính -> tên cột cho các truy vấn native
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "id", "id",
+            "studentNumber", "student_number",
+            "fullName", "full_name",
+            "email", "email");
+
+    private static final int MAX_SLICE_SIZE = 200;
+
     private final StudentRepository studentRepository;
+    private final IdBlockAllocator idBlockAllocator;
+    private final TransactionTemplate transactionTemplate;
+    private final int ngramTokenSize;
 
-    public StudentService(StudentRepository studentRepository) {
+    public StudentService(StudentRepository studentRepository,
+                          IdBlockAllocator idBlockAllocator,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${student.search.ngram-token-size:2}") int ngramTokenSize) {
         this.studentRepository = studentRepository;
+        this.idBlockAllocator = idBlockAllocator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ngramTokenSize = ngramTokenSize;
     }
 
     public Page<Student> getAllStudents(Pageable pageable) {
         return studentRepository.findAll(pageable);
     }
 
+    // Danh sách theo keyset: seek theo (sortBy, id) trên index, không OFFSET, không COUNT, không nạp entity.
+    // Cursor gắn với sortBy/ascending của lần gọi đầu
+    public CursorPage<StudentDto> getStudentSlice(String sortBy, boolean ascending, String cursor, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_SLICE_SIZE));
+        Long lastId = null;
+        String lastValue = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = raw.indexOf('|');
+                lastId = Long.parseLong(raw.substring(0, sep));
+                lastValue = raw.charAt(sep + 1) == '+' ? raw.substring(sep + 2) : null;
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+
+        List<StudentDto> rows;
+        try {
+            rows = studentRepository.findDtoSlice(sortBy, ascending, lastValue, lastId, limit + 1);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+
+        // Đọc dư 1 dòng để biết còn trang sau
+        boolean hasNext = rows.size() > limit;
+        List<StudentDto> items = hasNext ? rows.subList(0, limit) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            StudentDto last = items.get(items.size() - 1);
+            String value = "studentNumber".equals(sortBy) ? last.getStudentNumber()
+                    : "fullName".equals(sortBy) ? last.getFullName() : "";
+            String raw = last.getId() + "|" + (value == null ? "-" : "+" + value);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        return CursorPage.<StudentDto>builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .build();
+    }
+
     public Page<Student> searchStudents(String keyword, Pageable pageable) {
-        return studentRepository.searchStudents(keyword, pageable);
+        String trimmed = keyword == null ? "" : keyword.trim();
+        if (trimmed.isEmpty()) {
+            return studentRepository.findAll(pageable);
+        }
+        Pageable nativePageable = toColumnSort(pageable);
+        if (trimmed.length() < ngramTokenSize) {
+            return studentRepository.searchStudentsByPrefix(escapeLike(trimmed) + "%", nativePageable);
+        }
+        // Cụm trong ngoặc kép: ngram parser tìm các ngram liên tiếp, tương đương tìm chuỗi con
+        return studentRepository.searchStudents("\"" + trimmed.replace("\"", " ") + "\"", nativePageable);
+    }
+
+    private static Pageable toColumnSort(Pageable pageable) {
+        Sort sort = Sort.by(pageable.getSort().stream()
+                .map(order -> {
+                    String column = SORT_COLUMNS.get(order.getProperty());
+                    if (column == null) {
+                        throw new RuntimeException("Unsupported sort field: " + order.getProperty());
+                    }
+                    return order.withProperty(column);
+                })
+                .toList());
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
 
     public Student getStudentById(Long id) {
@@ -29,14 +128,17 @@ public class StudentService {
                 .orElseThrow(() -> new RuntimeException("Student not found with id: " + id));
     }
 
-    @Transactional
+    // Id cấp trước khi mở transaction
     public Student createStudent(Student student) {
-        if (studentRepository.findByStudentNumber(student.getStudentNumber()).isPresent()) {
-            throw new RuntimeException("Student number already exists: " + student.getStudentNumber());
-        }
-        if (student.getEmail() != null && studentRepository.findByEmail(student.getEmail()).isPresent()) {
-            throw new RuntimeException("Email already exists: " + student.getEmail());
-        }
-        return studentRepository.save(student);
+        student.setId(idBlockAllocator.nextId(IdBlockAllocator.STUDENT));
+        return transactionTemplate.execute(tx -> {
+            if (studentRepository.findByStudentNumber(student.getStudentNumber()).isPresent()) {
+                throw new RuntimeException("Student number already exists: " + student.getStudentNumber());
+            }
+            if (student.getEmail() != null && studentRepository.findByEmail(student.getEmail()).isPresent()) {
+                throw new RuntimeException("Email already exists: " + student.getEmail());
+            }
+            return studentRepository.save(student);
+        });
     }
 }
\ No newline at end of file
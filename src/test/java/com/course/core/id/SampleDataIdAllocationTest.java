@@ -0,0 +1,53 @@
+package com.course.core.id;
+
+import com.course.modules.course.model.Course;
+import com.course.modules.course.service.CourseService;
+import com.course.modules.student.model.Student;
+import com.course.modules.student.service.StudentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Quy trình cài đặt trong tài liệu: Liquibase dựng schema, chạy sample-data.sql, rồi tạo dữ liệu qua ứng dụng.
+ * Dùng H2 chế độ MySQL của profile load, với database riêng để không dùng chung dữ liệu với load test.
+ */
+@ActiveProfiles("load")
+@SpringBootTest(properties =
+        "spring.datasource.url=jdbc:h2:mem:course_sample_data;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1")
+class SampleDataIdAllocationTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private CourseService courseService;
+
+    @Test
+    void createAfterSampleDataDoesNotReuseSampleIds() {
+        new ResourceDatabasePopulator(new FileSystemResource("sample-data.sql")).execute(dataSource);
+
+        Student student = studentService.createStudent(Student.builder()
+                .studentNumber("STU006")
+                .fullName("Dana White")
+                .email("dana.white@example.com")
+                .build());
+        Course course = courseService.createCourse(Course.builder()
+                .code("CS401")
+                .title("Operating Systems")
+                .build());
+
+        assertTrue(student.getId() > 5, "student id " + student.getId() + " overlaps the sample data");
+        assertTrue(course.getId() > 3, "course id " + course.getId() + " overlaps the sample data");
+    }
+}
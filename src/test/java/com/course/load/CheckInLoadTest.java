@@ -0,0 +1,337 @@
+package com.course.load;
+
+import com.course.core.auth.model.UserRole;
+import com.course.core.auth.security.AuthenticatedUser;
+import com.course.core.auth.service.JwtTokenProvider;
+import com.course.core.id.IdBlockAllocator;
+import com.course.modules.attendance.dto.RateLimiterStatsDto;
+import com.course.modules.attendance.model.AttendanceCounterScope;
+import com.course.modules.attendance.service.AttendanceCounterService;
+import com.course.modules.attendance.service.CheckInRateLimiter;
+import com.course.modules.course.model.Course;
+import com.course.modules.course.service.CourseService;
+import com.course.modules.session.dto.CreateSessionRequest;
+import com.course.modules.session.dto.SessionDto;
+import com.course.modules.session.service.SessionService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mô phỏng đầu giờ học: cả lớp quét QR rồi check-in gần như cùng lúc, qua HTTP thật (JWT, security, controller)
+ * trên H2 chế độ MySQL, với giới hạn tần suất mặc định như production. In ra p50/p99/p999, throughput,
+ * tỉ lệ lỗi, tỉ lệ 429 và fail khi vượt ngưỡng.
+ *
+ * Chạy: mvn -Pload-test test [-Dload.students=5000 -Dload.concurrency=128 -Dload.max-p99-ms=500 ...]
+ */
+@Slf4j
+@Tag("load")
+@ActiveProfiles("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CheckInLoadTest {
+
+    private static final int STUDENTS = Integer.getInteger("load.students", 2000);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 64);
+    private static final int WARMUP_REQUESTS = Integer.getInteger("load.warmup-requests", 500);
+    // Ngưỡng mặc định đặt sát số đo trên máy dev (p99 ~1,5-1,9 s, ~120-160 req/s) cộng biên cho dao động;
+    // máy chậm hơn thì nới bằng -Dload.*
+    private static final long MAX_P99_MS = Long.getLong("load.max-p99-ms", 2500);
+    private static final long MAX_P999_MS = Long.getLong("load.max-p999-ms", 4000);
+    // Lỗi không tính 429: bị giới hạn tần suất là hành vi đúng, được kiểm riêng bằng load.max-rate-limited-rate
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("load.max-error-rate", "0"));
+    private static final double MAX_RATE_LIMITED_RATE = Double.parseDouble(System.getProperty("load.max-rate-limited-rate", "0.01"));
+    private static final double MIN_THROUGHPUT = Double.parseDouble(System.getProperty("load.min-throughput", "100"));
+
+    private static final String INSERT_STUDENT_SQL =
+            "INSERT INTO student (id, student_number, full_name, email) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_USER_SQL =
+            "INSERT INTO users (id, username, password, email, full_name, role, student_id, created_at, updated_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdBlockAllocator idBlockAllocator;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private CourseService courseService;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private CheckInRateLimiter checkInRateLimiter;
+
+    @Autowired
+    private AttendanceCounterService attendanceCounterService;
+
+    @Value("${attendance.rate-limit.session.capacity:1000}")
+    private int sessionCapacity;
+
+    @Value("${attendance.rate-limit.session.refill-per-second:300}")
+    private double sessionRefillPerSecond;
+
+    @Test
+    void checkInBurst() throws Exception {
+        long seedStart = System.nanoTime();
+        String[] tokens = seedStudents();
+        Long sessionId = openSession();
+        String qrToken = sessionService.generateQrToken(sessionId, 60).getQrToken();
+        log.info("Seeded {} students and users in {} ms", STUDENTS,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seedStart));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        String baseUrl = "http://localhost:" + port + "/api/attendance";
+
+        // Làm nóng JIT, connection pool và cache bằng request scan (không ghi DB)
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            send(client, scanRequest(baseUrl, sessionId, qrToken, tokens[i % STUDENTS]));
+        }
+
+        long[] scanLatency = new long[STUDENTS];
+        long[] checkInLatency = new long[STUDENTS];
+        AtomicInteger scanFailures = new AtomicInteger();
+        AtomicInteger checkInFailures = new AtomicInteger();
+        AtomicInteger rateLimited = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(CONCURRENCY);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>(STUDENTS);
+        for (int i = 0; i < STUDENTS; i++) {
+            int student = i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                Result scan = send(client, scanRequest(baseUrl, sessionId, qrToken, tokens[student]));
+                scanLatency[student] = scan.nanos;
+                if (scan.status != 200) {
+                    scanFailures.incrementAndGet();
+                    if (scan.status == 429) rateLimited.incrementAndGet();
+                }
+
+                String body = "{\"sessionId\":" + sessionId + ",\"qrToken\":\"" + qrToken + "\"}";
+                HttpRequest checkIn = HttpRequest.newBuilder(URI.create(baseUrl + "/check-in"))
+                        .header("Authorization", "Bearer " + tokens[student])
+                        .header("Content-Type", "application/json")
+                        .header("Idempotency-Key", UUID.randomUUID().toString())
+                        .timeout(Duration.ofSeconds(30))
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+                Result result = send(client, checkIn);
+                checkInLatency[student] = result.nanos;
+                if (result.status != 200) {
+                    checkInFailures.incrementAndGet();
+                    if (result.status == 429) rateLimited.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        RateLimiterStatsDto limiterBefore = checkInRateLimiter.getStats();
+        long burstStart = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - burstStart;
+        pool.shutdown();
+
+        int requests = STUDENTS * 2;
+        int errors = scanFailures.get() + checkInFailures.get() - rateLimited.get();
+        double elapsedSeconds = elapsedNanos / 1e9;
+        double throughput = requests / elapsedSeconds;
+        double errorRate = (double) errors / requests;
+        double rateLimitedRate = (double) rateLimited.get() / requests;
+        // Bucket của buổi học cho qua tối đa capacity + refill * thời gian, phần vượt chắc chắn nhận 429
+        long minRateLimited = Math.max(0, requests - sessionCapacity - (long) (sessionRefillPerSecond * elapsedSeconds));
+        long[] all = new long[requests];
+        System.arraycopy(scanLatency, 0, all, 0, STUDENTS);
+        System.arraycopy(checkInLatency, 0, all, STUDENTS, STUDENTS);
+
+        log.info("Check-in burst: {} students, {} client threads, {} requests in {} ms",
+                STUDENTS, CONCURRENCY, requests, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        log.info("Throughput: {} req/s, errors: {} ({}%), 429: {} ({}%, at least {} expected)",
+                String.format("%.1f", throughput), errors, String.format("%.3f", errorRate * 100),
+                rateLimited.get(), String.format("%.3f", rateLimitedRate * 100), minRateLimited);
+        RateLimiterStatsDto limiter = checkInRateLimiter.getStats();
+        long rejected = limiter.getRejectedByStudent() + limiter.getRejectedBySession()
+                - limiterBefore.getRejectedByStudent() - limiterBefore.getRejectedBySession();
+        log.info("Rate limiter: allowed={}, rejectedByStudent={}, rejectedBySession={}",
+                limiter.getAllowed() - limiterBefore.getAllowed(),
+                limiter.getRejectedByStudent() - limiterBefore.getRejectedByStudent(),
+                limiter.getRejectedBySession() - limiterBefore.getRejectedBySession());
+        log.info(format("scan", scanLatency));
+        log.info(format("check-in", checkInLatency));
+        log.info(format("all", all));
+
+        // Mỗi check-in thành công phải có đúng một bản ghi và được cộng vào bộ đếm
+        int succeeded = STUDENTS - checkInFailures.get();
+        Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM attendance WHERE session_id = ?",
+                Integer.class, sessionId);
+        Long counted = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(present_count + late_count), 0) FROM attendance_counter "
+                        + "WHERE scope = 'SESSION' AND scope_id = ?", Long.class, sessionId);
+        assertEquals(succeeded, rows, "attendance rows");
+        assertEquals(succeeded, counted, "session counter");
+
+        // Tính lại từ bảng attendance phải ra đúng giá trị đã cộng dồn
+        attendanceCounterService.rebuild();
+        AttendanceCounterService.Counts rebuilt = attendanceCounterService.getCounts(AttendanceCounterScope.SESSION, sessionId);
+        assertEquals(succeeded, rebuilt.getPresent() + rebuilt.getLate(), "session counter after rebuild");
+
+        assertTrue(errorRate <= MAX_ERROR_RATE,
+                "Error rate " + errorRate + " exceeds load.max-error-rate " + MAX_ERROR_RATE);
+        // Mọi 429 client nhận được đều do rate limiter từ chối, và không ít hơn mức bucket buộc phải từ chối
+        assertEquals(rejected, rateLimited.get(), "429 responses vs rate limiter rejections");
+        assertTrue(rateLimited.get() >= minRateLimited,
+                "Only " + rateLimited.get() + " requests rate limited, at least " + minRateLimited + " expected");
+        assertTrue(rateLimitedRate <= MAX_RATE_LIMITED_RATE,
+                "429 rate " + rateLimitedRate + " exceeds load.max-rate-limited-rate " + MAX_RATE_LIMITED_RATE);
+        assertTrue(nanosToMillis(percentile(all, 0.99)) <= MAX_P99_MS,
+                "p99 latency exceeds load.max-p99-ms " + MAX_P99_MS);
+        assertTrue(nanosToMillis(percentile(all, 0.999)) <= MAX_P999_MS,
+                "p999 latency exceeds load.max-p999-ms " + MAX_P999_MS);
+        assertTrue(throughput >= MIN_THROUGHPUT,
+                "Throughput " + throughput + " req/s is below load.min-throughput " + MIN_THROUGHPUT);
+    }
+
+    // Sinh viên + tài khoản chèn thẳng bằng JDBC batch; mật khẩu dùng chung một hash để không tốn BCrypt mỗi dòng
+    private String[] seedStudents() {
+        long firstStudentId = idBlockAllocator.allocate(IdBlockAllocator.STUDENT, STUDENTS);
+        long firstUserId = idBlockAllocator.allocate(IdBlockAllocator.USERS, STUDENTS);
+        String password = passwordEncoder.encode("password");
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Integer> indexes = new ArrayList<>(STUDENTS);
+        for (int i = 0; i < STUDENTS; i++) {
+            indexes.add(i);
+        }
+        jdbcTemplate.batchUpdate(INSERT_STUDENT_SQL, indexes, 1000, (ps, i) -> {
+            ps.setLong(1, firstStudentId + i);
+            ps.setString(2, String.format("LOAD%06d", i));
+            ps.setString(3, "Load Student " + i);
+            ps.setString(4, "load" + i + "@example.com");
+        });
+        jdbcTemplate.batchUpdate(INSERT_USER_SQL, indexes, 1000, (ps, i) -> {
+            ps.setLong(1, firstUserId + i);
+            ps.setString(2, "load" + i);
+            ps.setString(3, password);
+            ps.setString(4, "load" + i + "@example.com");
+            ps.setString(5, "Load Student " + i);
+            ps.setString(6, UserRole.STUDENT.name());
+            ps.setLong(7, firstStudentId + i);
+            ps.setTimestamp(8, now);
+            ps.setTimestamp(9, now);
+        });
+
+        String[] tokens = new String[STUDENTS];
+        for (int i = 0; i < STUDENTS; i++) {
+            tokens[i] = jwtTokenProvider.generateToken(new AuthenticatedUser(
+                    firstUserId + i, "load" + i, null, UserRole.STUDENT, firstStudentId + i));
+        }
+        return tokens;
+    }
+
+    private Long openSession() {
+        Course course = courseService.createCourse(Course.builder()
+                .code("LOAD-" + System.currentTimeMillis())
+                .title("Load test course")
+                .build());
+        LocalDateTime now = LocalDateTime.now();
+        SessionDto session = sessionService.createSession(CreateSessionRequest.builder()
+                .courseId(course.getId())
+                .sessionDate(now)
+                .startTime(now)
+                .endTime(now.plusHours(2))
+                .build());
+        return session.getId();
+    }
+
+    private static HttpRequest scanRequest(String baseUrl, Long sessionId, String qrToken, String jwt) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/scan?sessionId=" + sessionId + "&qrToken=" + qrToken))
+                .header("Authorization", "Bearer " + jwt)
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    private static Result send(HttpClient client, HttpRequest request) {
+        long start = System.nanoTime();
+        int status;
+        try {
+            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (Exception e) {
+            status = -1;
+        }
+        return new Result(status, System.nanoTime() - start);
+    }
+
+    private static String format(String name, long[] latencies) {
+        return String.format("%-8s p50=%d ms p99=%d ms p999=%d ms max=%d ms", name,
+                nanosToMillis(percentile(latencies, 0.50)),
+                nanosToMillis(percentile(latencies, 0.99)),
+                nanosToMillis(percentile(latencies, 0.999)),
+                nanosToMillis(percentile(latencies, 1.0)));
+    }
+
+    private static long percentile(long[] values, double p) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static long nanosToMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static class Result {
+        private final int status;
+        private final long nanos;
+
+        Result(int status, long nanos) {
+            this.status = status;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.course.load;
+
+import com.course.core.auth.dto.SignupRequest;
+import com.course.core.auth.model.UserRole;
+import com.course.core.auth.service.AuthService;
+import com.course.modules.course.model.Course;
+import com.course.modules.course.service.CourseService;
+import com.course.modules.session.dto.CreateSessionRequest;
+import com.course.modules.session.dto.ScheduleSessionsRequest;
+import com.course.modules.session.dto.SessionDto;
+import com.course.modules.session.service.SessionService;
+import com.course.modules.student.model.Student;
+import com.course.modules.student.service.StudentService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tạo đồng thời user, sinh viên, khóa học và buổi học với số luồng lớn hơn connection pool (32 ở profile load).
+ * Id phải được cấp ngoài transaction: nếu mỗi luồng vừa giữ một connection vừa cần connection thứ hai để lấy khối id
+ * thì pool cạn và các luồng chờ nhau đến hết connection-timeout.
+ *
+ * Chạy: mvn -Pload-test test [-Dload.create-threads=128 -Dload.schedules=32]
+ */
+@Slf4j
+@Tag("load")
+@ActiveProfiles("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ConcurrentCreateLoadTest {
+
+    private static final int THREADS = Integer.getInteger("load.create-threads", 64);
+    private static final int SCHEDULES = Integer.getInteger("load.schedules", 16);
+    private static final int SESSIONS_PER_SCHEDULE = 500;
+    // Hết connection-timeout (30 s) là dấu hiệu các luồng đã kẹt nhau
+    private static final long MAX_SECONDS = Long.getLong("load.max-create-seconds", 25);
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private CourseService courseService;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentCreatesGetDistinctIds() throws Exception {
+        String run = Long.toString(System.nanoTime(), 36);
+        Course course = courseService.createCourse(Course.builder().code("CC-" + run).title("Concurrent").build());
+        LocalDateTime now = LocalDateTime.now();
+
+        List<Callable<Long[]>> tasks = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            String key = run + "-" + i;
+            tasks.add(() -> new Long[]{
+                    authService.signup(SignupRequest.builder()
+                            .username("u" + key)
+                            .password("password")
+                            .email("u" + key + "@example.com")
+                            .fullName("Concurrent User")
+                            .role(UserRole.ADMIN)
+                            .build()).getUser().getId(),
+                    studentService.createStudent(Student.builder()
+                            .studentNumber("S" + key)
+                            .fullName("Concurrent Student")
+                            .email("s" + key + "@example.com")
+                            .build()).getId(),
+                    courseService.createCourse(Course.builder().code("C" + key).title("Concurrent").build()).getId(),
+                    sessionService.createSession(CreateSessionRequest.builder()
+                            .courseId(course.getId())
+                            .sessionDate(now)
+                            .startTime(now)
+                            .endTime(now.plusHours(2))
+                            .build()).getId()
+            });
+        }
+
+        long start = System.nanoTime();
+        List<Long[]> results = runConcurrently(tasks);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("{} threads created a user, student, course and session each in {} ms", THREADS, elapsedMs);
+
+        for (int column = 0; column < 4; column++) {
+            Set<Long> ids = new HashSet<>();
+            for (Long[] row : results) {
+                ids.add(row[column]);
+            }
+            assertEquals(THREADS, ids.size(), "distinct ids in column " + column);
+        }
+        assertEquals(THREADS, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM session WHERE course_id = ?", Integer.class, course.getId()));
+        assertTrue(elapsedMs <= MAX_SECONDS * 1000, "Concurrent creates took " + elapsedMs + " ms");
+    }
+
+    @Test
+    void concurrentSchedulesOfMaxSizeGetDistinctIds() throws Exception {
+        String run = Long.toString(System.nanoTime(), 36);
+        LocalDate startDate = LocalDate.now();
+
+        List<Callable<List<SessionDto>>> tasks = new ArrayList<>(SCHEDULES);
+        List<Long> courseIds = new ArrayList<>(SCHEDULES);
+        for (int i = 0; i < SCHEDULES; i++) {
+            Long courseId = courseService.createCourse(Course.builder().code("SC" + run + "-" + i).title("Schedule").build()).getId();
+            courseIds.add(courseId);
+            // Học mọi ngày trong 500 ngày: đúng bằng giới hạn session.schedule.max-sessions mặc định
+            tasks.add(() -> sessionService.scheduleSessions(ScheduleSessionsRequest.builder()
+                    .courseId(courseId)
+                    .startDate(startDate)
+                    .endDate(startDate.plusDays(SESSIONS_PER_SCHEDULE - 1))
+                    .daysOfWeek(EnumSet.allOf(DayOfWeek.class))
+                    .startTime(LocalTime.of(8, 0))
+                    .endTime(LocalTime.of(10, 0))
+                    .build()));
+        }
+
+        long start = System.nanoTime();
+        List<List<SessionDto>> results = runConcurrently(tasks);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("{} concurrent schedules of {} sessions saved in {} ms", SCHEDULES, SESSIONS_PER_SCHEDULE, elapsedMs);
+
+        Set<Long> ids = new HashSet<>();
+        for (List<SessionDto> sessions : results) {
+            assertEquals(SESSIONS_PER_SCHEDULE, sessions.size());
+            sessions.forEach(s -> ids.add(s.getId()));
+        }
+        assertEquals(SCHEDULES * SESSIONS_PER_SCHEDULE, ids.size(), "distinct session ids");
+        for (Long courseId : courseIds) {
+            assertEquals(SESSIONS_PER_SCHEDULE, jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM session WHERE course_id = ?", Integer.class, courseId));
+        }
+        assertTrue(elapsedMs <= MAX_SECONDS * 1000, "Concurrent schedules took " + elapsedMs + " ms");
+    }
+
+    // Chạy mọi task cùng lúc (mỗi task một luồng), ném lại lỗi đầu tiên nếu có
+    private static <T> List<T> runConcurrently(List<Callable<T>> tasks) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : futures) {
+                results.add(future.get(2, TimeUnit.MINUTES));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
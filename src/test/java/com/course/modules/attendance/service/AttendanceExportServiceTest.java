@@ -0,0 +1,68 @@
+package com.course.modules.attendance.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AttendanceExportServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final AttendanceExportService exportService =
+            new AttendanceExportService(jdbcTemplate, new ObjectMapper(), 100);
+
+    @Test
+    void csvCellsStartingWithFormulaCharactersAreEscaped() throws Exception {
+        assertEquals("'=cmd|' /C calc'!A0", csvNameCell("=cmd|' /C calc'!A0"));
+        assertEquals("'+1", csvNameCell("+1"));
+        assertEquals("'-2+3", csvNameCell("-2+3"));
+        assertEquals("'@SUM(A1)", csvNameCell("@SUM(A1)"));
+        assertEquals("'\tcmd", csvNameCell("\tcmd"));
+    }
+
+    @Test
+    void escapedCellIsStillQuotedPerRfc4180() throws Exception {
+        assertEquals("\"'=1,2\"", csvNameCell("=1,2"));
+        assertEquals("\"'=HYPERLINK(\"\"http://x\"\")\"", csvNameCell("=HYPERLINK(\"http://x\")"));
+    }
+
+    @Test
+    void ordinaryCellsAreUnchanged() throws Exception {
+        assertEquals("Nguyễn Văn A", csvNameCell("Nguyễn Văn A"));
+        assertEquals("\"Lê, Hoa\"", csvNameCell("Lê, Hoa"));
+        assertEquals("", csvNameCell(""));
+    }
+
+    // Xuất một dòng với student_name = name, trả về ô student_name (ô thứ 9) của dòng dữ liệu
+    private String csvNameCell(String name) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(3)).thenReturn("C1");
+        when(rs.getString(4)).thenReturn("Course");
+        when(rs.getString(8)).thenReturn("S1");
+        when(rs.getString(9)).thenReturn(name);
+        when(rs.getString(10)).thenReturn("PRESENT");
+        doAnswer(invocation -> {
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(1L, null, null, AttendanceExportService.Format.CSV, out);
+        String row = out.toString(StandardCharsets.UTF_8).split("\n")[1];
+        // Các ô trước student_name không chứa dấu phẩy: "0,0,C1,Course,0,,0,S1,"
+        String prefix = "0,0,C1,Course,0,,0,S1,";
+        String suffix = ",PRESENT,";
+        return row.substring(prefix.length(), row.length() - suffix.length());
+    }
+}
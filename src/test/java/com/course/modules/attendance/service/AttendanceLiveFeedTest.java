@@ -0,0 +1,156 @@
+package com.course.modules.attendance.service;
+
+import com.course.core.exception.ServiceUnavailableException;
+import com.course.modules.attendance.event.AttendanceCheckedInEvent;
+import com.course.modules.attendance.model.AttendanceStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AttendanceLiveFeedTest {
+
+    private static final long BLOCKED_SESSION = 1L;
+    private static final long HEALTHY_SESSION = 2L;
+
+    private final CheckedInRegistry checkedInRegistry = mock(CheckedInRegistry.class);
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private TestLiveFeed liveFeed;
+
+    @AfterEach
+    void tearDown() {
+        unblock.countDown();
+        liveFeed.shutdown();
+    }
+
+    @Test
+    void blockedSubscriberDoesNotDelayOtherSessions() throws Exception {
+        liveFeed = new TestLiveFeed(16);
+        RecordingEmitter blocked = liveFeed.subscribeAs(BLOCKED_SESSION, new RecordingEmitter(true));
+        RecordingEmitter healthy = liveFeed.subscribeAs(HEALTHY_SESSION, new RecordingEmitter(false));
+
+        // Kết nối của buổi 1 treo ngay ở sự kiện đầu tiên
+        liveFeed.onCheckedIn(checkIn(BLOCKED_SESSION, 100L));
+        assertTrue(blocked.sendStarted.await(5, TimeUnit.SECONDS));
+
+        for (long id = 200; id < 205; id++) {
+            liveFeed.onCheckedIn(checkIn(HEALTHY_SESSION, id));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(healthy.frames.poll(5, TimeUnit.SECONDS), "check-in " + i + " not delivered");
+        }
+    }
+
+    @Test
+    void subscriberThatFallsBehindIsDisconnected() throws Exception {
+        liveFeed = new TestLiveFeed(2);
+        RecordingEmitter blocked = liveFeed.subscribeAs(BLOCKED_SESSION, new RecordingEmitter(true));
+        liveFeed.subscribeAs(HEALTHY_SESSION, new RecordingEmitter(false));
+        liveFeed.onCheckedIn(checkIn(BLOCKED_SESSION, 100L));
+        assertTrue(blocked.sendStarted.await(5, TimeUnit.SECONDS));
+
+        // Một frame đang gửi (treo), hàng đợi 2 frame: frame thứ 4 làm tràn
+        for (long id = 101; id < 104; id++) {
+            liveFeed.onCheckedIn(checkIn(BLOCKED_SESSION, id));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (liveFeed.getSubscriberCount() != 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, liveFeed.getSubscriberCount());
+
+        // Lượt gửi đang treo kết thúc thì luồng sender đóng kết nối
+        unblock.countDown();
+        assertTrue(blocked.completed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void subscriberCapIsReportedAsServiceUnavailable() {
+        liveFeed = new TestLiveFeed(16);
+        for (int i = 0; i < 10; i++) {
+            liveFeed.subscribeAs(HEALTHY_SESSION, new RecordingEmitter(false));
+        }
+
+        ServiceUnavailableException e = assertThrows(ServiceUnavailableException.class,
+                () -> liveFeed.subscribeAs(HEALTHY_SESSION, new RecordingEmitter(false)));
+        assertTrue(e.getRetryAfterSeconds() > 0);
+        assertEquals(10, liveFeed.getSubscriberCount());
+    }
+
+    private static AttendanceCheckedInEvent checkIn(long sessionId, long attendanceId) {
+        return AttendanceCheckedInEvent.builder()
+                .attendanceId(attendanceId)
+                .sessionId(sessionId)
+                .studentId(attendanceId)
+                .status(AttendanceStatus.PRESENT)
+                .build();
+    }
+
+    private class TestLiveFeed extends AttendanceLiveFeed {
+        private SseEmitter next;
+
+        TestLiveFeed(int subscriberQueueCapacity) {
+            super(checkedInRegistry, new ObjectMapper(), 60_000, 10, 3600, 100, subscriberQueueCapacity);
+            when(checkedInRegistry.getRoster(anyLong())).thenReturn(new CheckedInRegistry.SessionRoster());
+        }
+
+        RecordingEmitter subscribeAs(long sessionId, RecordingEmitter emitter) {
+            next = emitter;
+            subscribe(sessionId);
+            emitter.subscribed = true;
+            return emitter;
+        }
+
+        @Override
+        SseEmitter newEmitter(long timeoutMs) {
+            return next;
+        }
+    }
+
+    // Emitter giả: ghi lại frame đã gửi, hoặc treo như socket không ghi được cho tới khi test nhả
+    private class RecordingEmitter extends SseEmitter {
+        private final boolean blocking;
+        private final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> frames = new LinkedBlockingQueue<>();
+        private final CountDownLatch sendStarted = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile boolean subscribed;
+
+        RecordingEmitter(boolean blocking) {
+            this.blocking = blocking;
+        }
+
+        @Override
+        public void send(Set<ResponseBodyEmitter.DataWithMediaType> items) {
+            if (!subscribed) return; // Frame snapshot lúc subscribe
+            sendStarted.countDown();
+            if (blocking) {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            frames.add(items);
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.course.modules.attendance.service;
+
+import com.course.modules.attendance.event.AttendanceCheckedInEvent;
+import com.course.modules.attendance.model.AttendanceCounterScope;
+import com.course.modules.attendance.model.AttendanceStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AttendanceStatisticsEngineTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final AttendanceStatisticsEngine engine =
+            new AttendanceStatisticsEngine(jdbcTemplate, mock(PlatformTransactionManager.class), true, 300);
+
+    @Test
+    void checkInsReportedWhileLoadingAreKept() throws Exception {
+        loadReturns(10);
+        engine.reconcile();
+
+        // Check-in commit sau khi câu SELECT đã chụp dữ liệu: DB trả 10, check-in mới phải được cộng thêm
+        doAnswer(invocation -> {
+            engine.onCheckedIn(checkIn(101L, AttendanceStatus.PRESENT));
+            engine.onCheckedIn(checkIn(102L, AttendanceStatus.LATE));
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(row("SESSION", 7L, 10, 0));
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        visibleInSnapshot();
+        engine.reconcile();
+
+        AttendanceCounterService.Counts counts = engine.getCounts(AttendanceCounterScope.SESSION, 7L);
+        assertEquals(11, counts.getPresent());
+        assertEquals(1, counts.getLate());
+    }
+
+    @Test
+    void checkInCommittedBeforeSnapshotButReportedDuringLoadIsCountedOnce() throws Exception {
+        loadReturns(10);
+        engine.reconcile();
+
+        // 101 commit trước khi SELECT chụp dữ liệu (DB đã tính nó: 11) nhưng listener AFTER_COMMIT chạy trong lúc nạp;
+        // 102 commit sau snapshot
+        doAnswer(invocation -> {
+            engine.onCheckedIn(checkIn(101L, AttendanceStatus.PRESENT));
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(row("SESSION", 7L, 11, 0));
+            engine.onCheckedIn(checkIn(102L, AttendanceStatus.PRESENT));
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        visibleInSnapshot(101L);
+        engine.reconcile();
+
+        assertEquals(12, engine.getCounts(AttendanceCounterScope.SESSION, 7L).getPresent());
+    }
+
+    @Test
+    void checkInsAfterReconcileAreCountedOnce() throws Exception {
+        loadReturns(10);
+        engine.reconcile();
+        engine.onCheckedIn(checkIn(101L, AttendanceStatus.PRESENT));
+        assertEquals(11, engine.getCounts(AttendanceCounterScope.SESSION, 7L).getPresent());
+
+        // Lần đối soát sau đọc được check-in đó từ DB, không cộng lại lần nữa
+        loadReturns(11);
+        engine.reconcile();
+        assertEquals(11, engine.getCounts(AttendanceCounterScope.SESSION, 7L).getPresent());
+    }
+
+    private void loadReturns(long present) throws Exception {
+        ResultSet row = row("SESSION", 7L, present, 0);
+        doAnswer(invocation -> {
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    private static ResultSet row(String scope, long scopeId, long present, long late) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(1)).thenReturn(scope);
+        when(rs.getLong(2)).thenReturn(scopeId);
+        when(rs.getLong(3)).thenReturn(present);
+        when(rs.getLong(4)).thenReturn(late);
+        return rs;
+    }
+
+    private void visibleInSnapshot(Long... ids) {
+        when(jdbcTemplate.queryForList(startsWith("SELECT id FROM attendance"), eq(Long.class), any(Object[].class)))
+                .thenReturn(List.of(ids));
+    }
+
+    private static AttendanceCheckedInEvent checkIn(Long attendanceId, AttendanceStatus status) {
+        return AttendanceCheckedInEvent.builder()
+                .attendanceId(attendanceId)
+                .courseId(3L)
+                .sessionId(7L)
+                .studentId(42L)
+                .status(status)
+                .build();
+    }
+}
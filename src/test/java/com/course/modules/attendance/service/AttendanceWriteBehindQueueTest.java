@@ -0,0 +1,142 @@
+package com.course.modules.attendance.service;
+
+import com.course.core.id.IdBlockAllocator;
+import com.course.modules.attendance.event.AttendanceCheckedInEvent;
+import com.course.modules.attendance.model.AttendanceStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AttendanceWriteBehindQueueTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final IdBlockAllocator idBlockAllocator = mock(IdBlockAllocator.class);
+    private final CheckedInRegistry checkedInRegistry = mock(CheckedInRegistry.class);
+
+    @AfterEach
+    void clearTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void enqueueOutsideTransactionIsAccepted() {
+        AttendanceWriteBehindQueue queue = newQueue();
+
+        queue.enqueue(checkIn(7L, 42L), "token");
+
+        assertTrue(queue.isPending(7L, 42L));
+        assertEquals(1, queue.getQueueSize());
+    }
+
+    // Chờ hàng đợi trong transaction sẽ giữ connection của pool suốt offer-timeout-ms
+    @Test
+    void enqueueInsideTransactionIsRejected() {
+        AttendanceWriteBehindQueue queue = newQueue();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        assertThrows(IllegalStateException.class, () -> queue.enqueue(checkIn(7L, 42L), "token"));
+        assertFalse(queue.isPending(7L, 42L));
+    }
+
+    @Test
+    void sessionStudentDuplicateIsTreatedAsAlreadyRecorded() throws Exception {
+        when(idBlockAllocator.allocate(IdBlockAllocator.ATTENDANCE, 1)).thenReturn(100L);
+        failBatchInsert();
+        when(jdbcTemplate.update(anyString(), any(Object[].class)))
+                .thenThrow(duplicate("Duplicate entry '7-42' for key 'attendance.uq_attendance_session_student'"));
+
+        AttendanceWriteBehindQueue queue = newQueue();
+        queue.start();
+        queue.enqueue(checkIn(7L, 42L), "token");
+        verify(jdbcTemplate, timeout(5000)).update(anyString(), any(Object[].class));
+        queue.shutdown();
+
+        assertFalse(queue.isPending(7L, 42L));
+        verify(idBlockAllocator, times(1)).allocate(anyString(), anyInt());
+        verify(checkedInRegistry, never()).unmark(anyLong(), anyLong());
+        assertFalse(Files.exists(tempDir.resolve("dead-letter.ndjson")));
+    }
+
+    // Id đã cấp trùng với dòng khác: không được coi là "đã điểm danh" mà phải ghi lại với id mới
+    @Test
+    void primaryKeyCollisionIsRetriedWithNewId() throws Exception {
+        when(idBlockAllocator.allocate(IdBlockAllocator.ATTENDANCE, 1)).thenReturn(100L, 200L);
+        failBatchInsert();
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            if (Long.valueOf(100L).equals(invocation.getArgument(1))) {
+                throw duplicate("Duplicate entry '100' for key 'attendance.PRIMARY'");
+            }
+            return 1;
+        });
+
+        AttendanceWriteBehindQueue queue = newQueue();
+        queue.start();
+        queue.enqueue(checkIn(7L, 42L), "token");
+        verify(jdbcTemplate, timeout(5000)).update(anyString(), eq(200L), eq(7L), eq(42L), any(), any(), any());
+        queue.shutdown();
+
+        assertFalse(queue.isPending(7L, 42L));
+        verify(checkedInRegistry, never()).unmark(anyLong(), anyLong());
+        assertFalse(Files.exists(tempDir.resolve("dead-letter.ndjson")));
+    }
+
+    // Batch lỗi thì queue ghi lại từng dòng bằng jdbcTemplate.update
+    @SuppressWarnings("unchecked")
+    private void failBatchInsert() {
+        when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(duplicate("Batch failed"));
+    }
+
+    private static DuplicateKeyException duplicate(String message) {
+        return new DuplicateKeyException("INSERT INTO attendance", new SQLIntegrityConstraintViolationException(message));
+    }
+
+    private AttendanceWriteBehindQueue newQueue() {
+        return new AttendanceWriteBehindQueue(jdbcTemplate, mock(PlatformTransactionManager.class),
+                mock(AttendanceCounterService.class), mock(ApplicationEventPublisher.class), idBlockAllocator,
+                checkedInRegistry, new ObjectMapper().findAndRegisterModules(), "write-behind", 10, 500, 5, 50, 3, 0,
+                tempDir.resolve("dead-letter.ndjson").toString());
+    }
+
+    private static AttendanceCheckedInEvent checkIn(Long sessionId, Long studentId) {
+        return AttendanceCheckedInEvent.builder()
+                .courseId(3L)
+                .sessionId(sessionId)
+                .studentId(studentId)
+                .status(AttendanceStatus.PRESENT)
+                .checkedAt(LocalDateTime.of(2025, 11, 20, 10, 5))
+                .build();
+    }
+}
@@ -0,0 +1,126 @@
+package com.course.modules.attendance.service;
+
+import com.course.modules.attendance.dto.RateLimiterStatsDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CheckInRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void allowsUpToCapacityThenRejects() {
+        FixedClockLimiter limiter = new FixedClockLimiter(3, 1, 1000, 300, 64, 100_000);
+
+        assertEquals(0, limiter.tryAcquire(1L, 10L));
+        assertEquals(0, limiter.tryAcquire(1L, 10L));
+        assertEquals(0, limiter.tryAcquire(1L, 10L));
+        assertEquals(1, limiter.tryAcquire(1L, 10L));
+        // Người dùng khác có bucket riêng
+        assertEquals(0, limiter.tryAcquire(2L, 10L));
+    }
+
+    @Test
+    void refillsOverTimeUpToCapacity() {
+        FixedClockLimiter limiter = new FixedClockLimiter(2, 1, 1000, 300, 64, 100_000);
+        drainUser(limiter, 1L, 2);
+
+        limiter.now += SECOND;
+        assertEquals(0, limiter.tryAcquire(1L, null));
+        assertEquals(1, limiter.tryAcquire(1L, null));
+
+        // Nghỉ lâu cũng chỉ đầy lại đến capacity
+        limiter.now += 100 * SECOND;
+        drainUser(limiter, 1L, 2);
+        assertEquals(1, limiter.tryAcquire(1L, null));
+    }
+
+    @Test
+    void retryAfterIsSecondsUntilNextTokenRoundedUp() {
+        // 0,25 token/giây: bucket rỗng cần 4 giây cho token tiếp theo
+        FixedClockLimiter limiter = new FixedClockLimiter(1, 0.25, 1000, 300, 64, 100_000);
+        drainUser(limiter, 1L, 1);
+        assertEquals(4, limiter.tryAcquire(1L, null));
+
+        limiter.now += SECOND;
+        assertEquals(3, limiter.tryAcquire(1L, null));
+
+        limiter.now += 2 * SECOND + SECOND / 2;
+        assertEquals(1, limiter.tryAcquire(1L, null));
+    }
+
+    @Test
+    void sessionRejectionRefundsTheUserToken() {
+        FixedClockLimiter limiter = new FixedClockLimiter(2, 1, 1, 1, 64, 100_000);
+
+        assertEquals(0, limiter.tryAcquire(1L, 10L));
+        // Buổi 10 hết token: bị từ chối theo buổi học, token của người dùng được trả lại
+        assertEquals(1, limiter.tryAcquire(1L, 10L));
+        assertEquals(0, limiter.tryAcquire(1L, 11L));
+        assertEquals(1, limiter.tryAcquire(1L, 12L));
+
+        RateLimiterStatsDto stats = limiter.getStats();
+        assertEquals(2, stats.getAllowed());
+        assertEquals(1, stats.getRejectedBySession());
+        assertEquals(1, stats.getRejectedByStudent());
+    }
+
+    @Test
+    void fullStripeEvictsOnlyBucketsThatHaveRefilled() {
+        // 1 stripe, tối đa 2 key
+        FixedClockLimiter limiter = new FixedClockLimiter(2, 1, 1000, 300, 1, 2);
+        assertEquals(0, limiter.tryAcquire(1L, null));
+        limiter.now += SECOND * 9 / 10;
+        assertEquals(0, limiter.tryAcquire(2L, null));
+
+        // Người dùng 1 đã đầy lại (bỏ được), người dùng 2 mới dùng (giữ lại cùng số token còn lại)
+        limiter.now += SECOND / 10;
+        assertEquals(0, limiter.tryAcquire(3L, null));
+        assertEquals(2, limiter.getStats().getTrackedStudents());
+        assertEquals(0, limiter.tryAcquire(2L, null));
+        assertEquals(1, limiter.tryAcquire(2L, null));
+    }
+
+    @Test
+    void fullStripeWithNoIdleBucketIsCleared() {
+        FixedClockLimiter limiter = new FixedClockLimiter(2, 1, 1000, 300, 1, 2);
+        assertEquals(0, limiter.tryAcquire(1L, null));
+        assertEquals(0, limiter.tryAcquire(2L, null));
+
+        assertEquals(0, limiter.tryAcquire(3L, null));
+        assertEquals(1, limiter.getStats().getTrackedStudents());
+        // Bucket bị xóa được tạo lại đầy
+        drainUser(limiter, 1L, 2);
+    }
+
+    @Test
+    void disabledLimiterAllowsEverything() {
+        CheckInRateLimiter limiter = new CheckInRateLimiter(false, 1, 1, 1, 1, 64, 100_000);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire(1L, 10L));
+        }
+    }
+
+    private static void drainUser(CheckInRateLimiter limiter, Long userId, int tokens) {
+        for (int i = 0; i < tokens; i++) {
+            assertEquals(0, limiter.tryAcquire(userId, null));
+        }
+    }
+
+    private static class FixedClockLimiter extends CheckInRateLimiter {
+        private long now = 1_000 * SECOND;
+
+        FixedClockLimiter(int userCapacity, double userRefill, int sessionCapacity, double sessionRefill,
+                          int stripes, int maxKeys) {
+            super(true, userCapacity, userRefill, sessionCapacity, sessionRefill, stripes, maxKeys);
+        }
+
+        @Override
+        long nanoTime() {
+            return now;
+        }
+    }
+}
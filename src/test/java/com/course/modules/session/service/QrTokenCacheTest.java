@@ -0,0 +1,97 @@
+package com.course.modules.session.service;
+
+import com.course.modules.course.model.Course;
+import com.course.modules.session.model.Session;
+import com.course.modules.session.repository.SessionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QrTokenCacheTest {
+
+    private static final Long SESSION_ID = 7L;
+
+    private final SessionRepository sessionRepository = mock(SessionRepository.class);
+    private final QrTokenCache cache = new QrTokenCache(sessionRepository, 100);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void evictInsideTransactionKeepsEntryUntilCommit() {
+        when(sessionRepository.findWithCourseById(SESSION_ID))
+                .thenReturn(Optional.of(session("old")), Optional.of(session("new")));
+        assertEquals("old", cache.getOrLoad(SESSION_ID).getQrToken());
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.evict(SESSION_ID);
+
+        // Chưa commit: DB vẫn là token cũ nên cache vẫn trả token cũ
+        assertEquals("old", cache.getOrLoad(SESSION_ID).getQrToken());
+        verify(sessionRepository, times(1)).findWithCourseById(SESSION_ID);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertEquals("new", cache.getOrLoad(SESSION_ID).getQrToken());
+        verify(sessionRepository, times(2)).findWithCourseById(SESSION_ID);
+    }
+
+    @Test
+    void rolledBackTransactionDoesNotEvict() {
+        when(sessionRepository.findWithCourseById(SESSION_ID)).thenReturn(Optional.of(session("old")));
+        cache.getOrLoad(SESSION_ID);
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.evict(SESSION_ID);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertEquals("old", cache.getOrLoad(SESSION_ID).getQrToken());
+        verify(sessionRepository, times(1)).findWithCourseById(SESSION_ID);
+    }
+
+    @Test
+    void loadThatReadBeforeEvictDoesNotCacheStaleToken() {
+        // Lần nạp đọc token cũ, rồi transaction ghi token mới commit (evict) trước khi lần nạp kịp lưu vào cache
+        when(sessionRepository.findWithCourseById(SESSION_ID))
+                .thenAnswer(inv -> {
+                    cache.evict(SESSION_ID);
+                    return Optional.of(session("old"));
+                })
+                .thenReturn(Optional.of(session("new")));
+
+        assertEquals("old", cache.getOrLoad(SESSION_ID).getQrToken());
+
+        assertEquals("new", cache.getOrLoad(SESSION_ID).getQrToken());
+        assertEquals("new", cache.getOrLoad(SESSION_ID).getQrToken());
+        verify(sessionRepository, times(2)).findWithCourseById(SESSION_ID);
+    }
+
+    private static Session session(String qrToken) {
+        Course course = Course.builder().id(1L).code("CS101").title("Intro").build();
+        return Session.builder()
+                .id(SESSION_ID)
+                .course(course)
+                .sessionDate(LocalDateTime.now())
+                .startTime(LocalDateTime.now())
+                .qrToken(qrToken)
+                .qrTokenExpiresAt(LocalDateTime.now().plusMinutes(5))
+                .build();
+    }
+}
@@ -0,0 +1,142 @@
+package com.course.modules.session.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QrTokenSignerTest {
+
+    private static final long ROTATION = 30;
+    private static final String KEY = "testSigningKeyForQrTokenSignerUnitTests";
+    // Đầu một bước thời gian để +/- vài giây không nhảy sang bước khác
+    private static final long START = 1_700_000_010L;
+
+    @Test
+    void currentTokenIsValidForItsSession() {
+        FixedClockSigner signer = new FixedClockSigner(KEY, START);
+        String token = signer.currentToken(1L, at(START + 600));
+
+        assertEquals(QrTokenSigner.Verification.VALID, signer.verify(1L, token));
+        assertTrue(token.startsWith("1." + START / ROTATION + "."));
+    }
+
+    @Test
+    void tokenOfPreviousStepIsStillAccepted() {
+        FixedClockSigner signer = new FixedClockSigner(KEY, START);
+        String token = signer.currentToken(1L, at(START + 600));
+
+        signer.now = START + ROTATION;
+        assertEquals(QrTokenSigner.Verification.VALID, signer.verify(1L, token));
+    }
+
+    @Test
+    void tokenOlderThanPreviousStepIsExpired() {
+        FixedClockSigner signer = new FixedClockSigner(KEY, START);
+        String token = signer.currentToken(1L, at(START + 600));
+
+        signer.now = START + 2 * ROTATION;
+        assertEquals(QrTokenSigner.Verification.EXPIRED, signer.verify(1L, token));
+    }
+
+    @Test
+    void tokenFromFutureStepIsInvalid() {
+        FixedClockSigner signer = new FixedClockSigner(KEY, START + ROTATION);
+        String token = signer.currentToken(1L, at(START + 600));
+
+        signer.now = START;
+        assertEquals(QrTokenSigner.Verification.INVALID, signer.verify(1L, token));
+    }
+
+    @Test
+    void tokenPastAttendanceWindowIsExpired() {
+        FixedClockSigner signer = new FixedClockSigner(KEY, START);
+        String token = signer.currentToken(1L, at(START + 5));
+
+        assertEquals(QrTokenSigner.Verification.VALID, signer.verify(1L, token));
+        signer.now = START + 5;
+        assertEquals(QrTokenSigner.Verification.EXPIRED, signer.verify(1L, token));
+    }
+
+    @Test
+    void tokenOfAnotherSessionIsInvalid() {
+        FixedClockSigner signer = new FixedClockSigner(KEY, START);
+        String token = signer.currentToken(1L, at(START + 600));
+
+        assertEquals(QrTokenSigner.Verification.INVALID, signer.verify(2L, token));
+        assertEquals(QrTokenSigner.Verification.INVALID, signer.verify(null, token));
+    }
+
+    @Test
+    void tamperedPayloadIsInvalid() {
+        FixedClockSigner signer = new FixedClockSigner(KEY, START);
+        String[] parts = signer.currentToken(1L, at(START + 600)).split("\\.");
+
+        // Đổi session, bước thời gian hoặc hạn mà giữ nguyên chữ ký
+        String otherSession = "2." + parts[1] + "." + parts[2] + "." + parts[3];
+        String laterStep = parts[0] + "." + (Long.parseLong(parts[1]) - 1) + "." + parts[2] + "." + parts[3];
+        String longerWindow = parts[0] + "." + parts[1] + "." + (Long.parseLong(parts[2]) + 3600) + "." + parts[3];
+
+        assertEquals(QrTokenSigner.Verification.INVALID, signer.verify(2L, otherSession));
+        assertEquals(QrTokenSigner.Verification.INVALID, signer.verify(1L, laterStep));
+        assertEquals(QrTokenSigner.Verification.INVALID, signer.verify(1L, longerWindow));
+    }
+
+    @Test
+    void tamperedSignatureIsInvalid() {
+        FixedClockSigner signer = new FixedClockSigner(KEY, START);
+        String token = signer.currentToken(1L, at(START + 600));
+        char last = token.charAt(token.length() - 1);
+        String flipped = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+
+        assertEquals(QrTokenSigner.Verification.INVALID, signer.verify(1L, flipped));
+        assertEquals(QrTokenSigner.Verification.INVALID, signer.verify(1L, token + "x!"));
+    }
+
+    @Test
+    void tokenSignedWithAnotherKeyIsInvalid() {
+        String token = new FixedClockSigner("anotherSigningKey", START).currentToken(1L, at(START + 600));
+
+        assertEquals(QrTokenSigner.Verification.INVALID, new FixedClockSigner(KEY, START).verify(1L, token));
+    }
+
+    @Test
+    void malformedTokenIsInvalid() {
+        FixedClockSigner signer = new FixedClockSigner(KEY, START);
+
+        assertEquals(QrTokenSigner.Verification.INVALID, signer.verify(1L, null));
+        assertEquals(QrTokenSigner.Verification.INVALID, signer.verify(1L, ""));
+        assertEquals(QrTokenSigner.Verification.INVALID, signer.verify(1L, "1.2.3"));
+        assertEquals(QrTokenSigner.Verification.INVALID, signer.verify(1L, "1.step.3.sig"));
+        assertEquals(QrTokenSigner.Verification.INVALID, signer.verify(1L, "1.2.3.4.5"));
+    }
+
+    @Test
+    void nonPositiveRotationIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new QrTokenSigner("signed", 0, KEY));
+        assertThrows(IllegalArgumentException.class, () -> new QrTokenSigner("random", -30, KEY));
+    }
+
+    private static LocalDateTime at(long epochSecond) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneId.systemDefault());
+    }
+
+    private static class FixedClockSigner extends QrTokenSigner {
+        private long now;
+
+        FixedClockSigner(String key, long now) {
+            super("signed", ROTATION, key);
+            this.now = now;
+        }
+
+        @Override
+        long nowEpochSecond() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.course.modules.session.service;
+
+import com.course.core.id.IdBlockAllocator;
+import com.course.modules.course.model.Course;
+import com.course.modules.course.repository.CourseRepository;
+import com.course.modules.session.dto.ScheduleSessionsRequest;
+import com.course.modules.session.dto.SessionDto;
+import com.course.modules.session.repository.SessionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionServiceScheduleTest {
+
+    // 2025-09-01 là thứ Hai
+    private static final LocalDate MONDAY = LocalDate.of(2025, 9, 1);
+
+    private final SessionRepository sessionRepository = mock(SessionRepository.class);
+    private final CourseRepository courseRepository = mock(CourseRepository.class);
+    private final IdBlockAllocator idBlockAllocator = mock(IdBlockAllocator.class);
+
+    @Test
+    void intervalCountsWeeksFromTheWeekOfAMidWeekStartDate() {
+        // Bắt đầu thứ Tư: thứ Hai tuần đầu đã qua, tuần 1 và 3 bị bỏ
+        List<LocalDate> dates = service(500).expandSchedule(request(MONDAY.plusDays(2), MONDAY.plusDays(25),
+                EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY, DayOfWeek.FRIDAY), 2, null));
+
+        assertEquals(List.of(MONDAY.plusDays(2), MONDAY.plusDays(4),
+                MONDAY.plusDays(14), MONDAY.plusDays(16), MONDAY.plusDays(18)), dates);
+    }
+
+    @Test
+    void sundayStartDateBelongsToTheWeekBeforeTheNextMonday() {
+        // Tuần bắt đầu từ thứ Hai (giống RRULE WKST=MO): Chủ nhật 07/09 thuộc tuần 0, thứ Hai 08/09 là tuần 1
+        List<LocalDate> dates = service(500).expandSchedule(request(MONDAY.plusDays(6), MONDAY.plusDays(35),
+                EnumSet.of(DayOfWeek.MONDAY), 2, null));
+
+        assertEquals(List.of(MONDAY.plusDays(14), MONDAY.plusDays(28)), dates);
+    }
+
+    @Test
+    void excludedDatesAreSkipped() {
+        List<LocalDate> dates = service(500).expandSchedule(request(MONDAY, MONDAY.plusDays(20),
+                EnumSet.of(DayOfWeek.MONDAY), 1, List.of(MONDAY.plusDays(7), MONDAY.plusDays(10))));
+
+        assertEquals(List.of(MONDAY, MONDAY.plusDays(14)), dates);
+    }
+
+    @Test
+    void scheduleUpToTheCapIsAccepted() {
+        List<LocalDate> dates = service(5).expandSchedule(request(MONDAY, MONDAY.plusDays(4),
+                EnumSet.allOf(DayOfWeek.class), 1, null));
+
+        assertEquals(5, dates.size());
+    }
+
+    @Test
+    void scheduleOverTheCapIsRejectedBeforeAllocatingIds() {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> service(5).scheduleSessions(
+                request(MONDAY, MONDAY.plusDays(5), EnumSet.allOf(DayOfWeek.class), 1, null)));
+
+        assertEquals("Schedule expands to more than 5 sessions", e.getMessage());
+        verify(idBlockAllocator, never()).allocate(anyString(), anyInt());
+    }
+
+    @Test
+    void scheduleWithoutAnySessionIsRejected() {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> service(500).expandSchedule(
+                request(MONDAY, MONDAY.plusDays(6), EnumSet.of(DayOfWeek.MONDAY), 1, List.of(MONDAY))));
+
+        assertEquals("Schedule does not contain any session", e.getMessage());
+    }
+
+    @Test
+    void sessionsTakeConsecutiveIdsFromOneBlock() {
+        Course course = Course.builder().id(3L).code("C3").title("Course").build();
+        when(courseRepository.findById(3L)).thenReturn(Optional.of(course));
+        when(idBlockAllocator.allocate(IdBlockAllocator.SESSION, 3)).thenReturn(1001L);
+        when(sessionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<SessionDto> sessions = service(500).scheduleSessions(request(MONDAY, MONDAY.plusDays(6),
+                EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY, DayOfWeek.FRIDAY), 1, null));
+
+        assertEquals(List.of(1001L, 1002L, 1003L), sessions.stream().map(SessionDto::getId).toList());
+        assertEquals(MONDAY.plusDays(4).atTime(8, 0), sessions.get(2).getStartTime());
+        assertEquals(MONDAY.plusDays(4).atTime(10, 0), sessions.get(2).getEndTime());
+    }
+
+    private SessionService service(int maxSessions) {
+        return new SessionService(sessionRepository, courseRepository, mock(QrTokenCache.class),
+                mock(QrTokenSigner.class), idBlockAllocator, mock(PlatformTransactionManager.class), maxSessions);
+    }
+
+    private static ScheduleSessionsRequest request(LocalDate startDate, LocalDate endDate, Set<DayOfWeek> days,
+                                                   int intervalWeeks, List<LocalDate> excludedDates) {
+        return ScheduleSessionsRequest.builder()
+                .courseId(3L)
+                .startDate(startDate)
+                .endDate(endDate)
+                .daysOfWeek(days)
+                .intervalWeeks(intervalWeeks)
+                .startTime(LocalTime.of(8, 0))
+                .endTime(LocalTime.of(10, 0))
+                .excludedDates(excludedDates)
+                .build();
+    }
+}
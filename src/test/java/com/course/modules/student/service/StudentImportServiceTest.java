@@ -0,0 +1,64 @@
+package com.course.modules.student.service;
+
+import com.course.core.id.IdBlockAllocator;
+import com.course.modules.student.dto.StudentImportResultDto;
+import com.course.modules.student.repository.StudentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class StudentImportServiceTest {
+
+    @Test
+    void splitsPlainFields() {
+        assertEquals(List.of("SV001", "Nguyen Van A", "a@example.com"),
+                StudentImportService.parseLine("SV001,Nguyen Van A,a@example.com"));
+    }
+
+    @Test
+    void keepsCommasInsideQuotedField() {
+        assertEquals(List.of("SV001", "Nguyen, Van A", "a@example.com"),
+                StudentImportService.parseLine("SV001,\"Nguyen, Van A\",a@example.com"));
+    }
+
+    @Test
+    void unescapesDoubledQuotes() {
+        assertEquals(List.of("SV001", "Nguyen \"Bo\" A", ""),
+                StudentImportService.parseLine("SV001,\"Nguyen \"\"Bo\"\" A\","));
+        assertEquals(List.of("\"", "x"), StudentImportService.parseLine("\"\"\"\",x"));
+    }
+
+    @Test
+    void keepsEmptyFields() {
+        assertEquals(List.of("", "", ""), StudentImportService.parseLine(",,"));
+        assertEquals(List.of("SV001", ""), StudentImportService.parseLine("SV001,\"\""));
+    }
+
+    @Test
+    void stripsUtf8BomFromHeader() {
+        assertEquals(List.of("student_number", "full_name"),
+                StudentImportService.parseLine(StudentImportService.stripBom("\uFEFFstudent_number,full_name")));
+        assertEquals("student_number", StudentImportService.stripBom("student_number"));
+        assertEquals("", StudentImportService.stripBom(""));
+    }
+
+    // File lưu từ Excel có BOM: header vẫn phải nhận ra cột student_number
+    @Test
+    void importAcceptsHeaderWithBom() throws Exception {
+        StudentImportService service = new StudentImportService(mock(StudentRepository.class), mock(JdbcTemplate.class),
+                mock(IdBlockAllocator.class), mock(PlatformTransactionManager.class), 1000, 1000);
+        byte[] csv = "\uFEFFstudent_number,full_name,email\n".getBytes(StandardCharsets.UTF_8);
+
+        StudentImportResultDto result = service.importCsv(new ByteArrayInputStream(csv));
+
+        assertEquals(0, result.getTotalRows());
+        assertEquals(0, result.getFailed());
+    }
+}
@@ -0,0 +1,70 @@
+package com.course.modules.student.service;
+
+import com.course.core.id.IdBlockAllocator;
+import com.course.modules.student.model.Student;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tìm kiếm FULLTEXT ngram chỉ chạy được trên MySQL thật (datasource trong application.properties).
+ * Chạy: mvn -Pmysql-test test
+ */
+@Tag("mysql")
+@SpringBootTest
+class StudentSearchMySqlTest {
+
+    private static final String[] NAMES = {"Trần Thị Hoa", "Nguyễn Anh", "Lê Minh"};
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private IdBlockAllocator idBlockAllocator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long firstId;
+    private String prefix;
+
+    // Ghi bằng JDBC ngoài transaction: InnoDB chỉ đưa dòng vào FULLTEXT index khi commit
+    @BeforeEach
+    void seed() {
+        firstId = idBlockAllocator.allocate(IdBlockAllocator.STUDENT, NAMES.length);
+        prefix = "FT" + Long.toString(firstId, 36).toUpperCase();
+        for (int i = 0; i < NAMES.length; i++) {
+            jdbcTemplate.update("INSERT INTO student (id, student_number, full_name, email) VALUES (?, ?, ?, ?)",
+                    firstId + i, prefix + i, NAMES[i], prefix.toLowerCase() + i + "@example.com");
+        }
+    }
+
+    @AfterEach
+    void cleanup() {
+        jdbcTemplate.update("DELETE FROM student WHERE id BETWEEN ? AND ?", firstId, firstId + NAMES.length - 1);
+    }
+
+    // Mỗi tên chỉ gồm các ngram 2 ký tự chứa stopword mặc định (a, an, in): phải tìm được khi index tắt stopword
+    @Test
+    void findsNamesMadeOfStopwordBigrams() {
+        assertEquals(List.of("Trần Thị Hoa"), search("Hoa"));
+        assertEquals(List.of("Nguyễn Anh"), search("Anh"));
+        assertEquals(List.of("Lê Minh"), search("Minh"));
+    }
+
+    private List<String> search(String keyword) {
+        return studentService.searchStudents(keyword, PageRequest.of(0, 1000)).getContent().stream()
+                .filter(s -> s.getStudentNumber().startsWith(prefix))
+                .map(Student::getFullName)
+                .toList();
+    }
+}